@@ -1,15 +1,27 @@
 package com.example.rulerDesktop;
 
+import com.example.rulerDesktop.model.ColumnVector;
 import com.example.rulerDesktop.model.CsvData;
+import com.example.rulerDesktop.model.CsvRow;
 import com.example.rulerDesktop.model.Histogram;
 import com.example.rulerDesktop.model.Matrix;
+import com.example.rulerDesktop.model.NullTokenSet;
+import com.example.rulerDesktop.service.BinningService;
+import com.example.rulerDesktop.service.CsvFileWatcher;
+import com.example.rulerDesktop.service.CsvLoadListener;
 import com.example.rulerDesktop.service.CsvParsingService;
+import com.example.rulerDesktop.service.ImportJob;
+import com.example.rulerDesktop.service.JsonIngestService;
 import com.example.rulerDesktop.service.MatrixService;
 import com.example.rulerDesktop.service.HistogramService;
 import javafx.animation.TranslateTransition;
+import javafx.application.Platform;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 
@@ -17,6 +29,7 @@ import javafx.geometry.Pos;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
+import javafx.scene.control.cell.CheckBoxListCell;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.stage.FileChooser;
@@ -26,9 +39,17 @@ import javafx.util.Duration;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class HelloController implements Initializable {
 
@@ -56,9 +77,21 @@ public class HelloController implements Initializable {
     @FXML
     private Button importCsvBtn;
 
+    @FXML
+    private ProgressBar loadProgressBar;
+
+    @FXML
+    private Label loadProgressLabel;
+
+    @FXML
+    private Button cancelImportBtn;
+
     @FXML
     private Button exportCsvBtn;
 
+    @FXML
+    private ToggleButton followCsvBtn;
+
     @FXML
     private Button resetAllBtn;
 
@@ -73,7 +106,7 @@ public class HelloController implements Initializable {
     private HBox csvTableHeader;
 
     @FXML
-    private TableView<Map<String, String>> csvTableView;
+    private TableView<CsvRow> csvTableView;
 
     @FXML
     private Label csvInfoLabel;
@@ -104,7 +137,22 @@ public class HelloController implements Initializable {
 
     // 添加CSV解析服务
     private final CsvParsingService csvParsingService = new CsvParsingService();
+    private final JsonIngestService jsonIngestService = new JsonIngestService();
     private CsvData currentCsvData; // 存储当前加载的CSV数据
+    private File currentCsvFile; // 当前加载的CSV文件，跟踪模式监视该文件
+    private List<String> currentSelectedColumns; // 当前文件加载的列，为null时为全部列
+    private Task<LoadedCsv> currentLoadTask; // 正在进行的导入，可以取消
+    // 分析导入预览的后台线程，与解析线程分开，分析预览时解析不停顿
+    private final ExecutorService previewExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "csv-preview");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 跟踪模式：监视文件追加的新行
+    private CsvFileWatcher csvFileWatcher;
+    private FollowSession followSession; // 正在跟踪的数据，只在UI线程上读写
+    private volatile long followOffset; // 已读取到的字节位置，只在监视线程上更新
 
     // 用于记录拖拽状态
     private boolean isDragging = false;
@@ -132,6 +180,8 @@ public class HelloController implements Initializable {
 
     private static final int HISTOGRAM_LABEL_THRESHOLD = 15; // 超过15箱时不显示标注
 
+    private static final int COLUMN_SELECTION_THRESHOLD = 30; // 超过30列时先让用户选择要加载的列
+
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         setupSidebars();
@@ -139,16 +189,13 @@ public class HelloController implements Initializable {
         setupTableResizing();
     }
 
-    // 为所有列生成Matrix并放置在CSV表格上方
-    private void generateAllMatrices() {
-        if (currentCsvData == null || currentCsvData.getHeaders().isEmpty()) {
+    // 显示currentMatrices中所有列的Matrix，放置在CSV表格上方（Matrix由后台加载任务生成）
+    private void showAllMatrices() {
+        if (currentCsvData == null || currentMatrices == null) {
             return;
         }
 
         try {
-            // 使用MatrixService批量生成所有列的Matrix
-            currentMatrices = matrixService.generateAllMatrices(currentCsvData, 6); // 默认6个bins
-
             // 清空并重新构建Matrix容器
             matrixRowContainer.getChildren().clear();
             matrixRowContainer.setAlignment(Pos.TOP_LEFT); // 设置容器左对齐
@@ -325,8 +372,12 @@ public class HelloController implements Initializable {
         try {
             Matrix matrix = currentMatrices.get(columnName);
             if (matrix != null) {
-                matrix = matrixService.updateSingleMatrixBinCount(matrix, newBinCount);
+                // 在副本上重新分箱：跟踪模式下按对象是否变化判断合并期间用户调整过分箱（见applyFollowedRecords）
+                matrix = matrixService.updateSingleMatrixBinCount(matrix.copy(), newBinCount);
                 currentMatrices.put(columnName, matrix);
+                if (followSession != null) {
+                    followSession.matrixBinCounts.put(columnName, newBinCount);
+                }
                 renderMatrixToCanvas(canvas, matrix);
                 setupCanvasInteraction(canvas, matrix);
                 System.out.println("列 '" + columnName + "' 的Matrix bins更新为: " + newBinCount + "ABin"+ matrix.getActualBinCount());
@@ -341,9 +392,12 @@ public class HelloController implements Initializable {
         try {
             Histogram histogram = currentHistograms.get(columnName);
             if (histogram != null) {
-                // 使用HistogramService更新分箱
-                histogram = histogramService.updateSingleHistogramBinCount(histogram, newBinCount);
+                // 使用HistogramService在副本上更新分箱（跟踪模式下按对象是否变化判断合并期间用户调整过分箱）
+                histogram = histogramService.updateSingleHistogramBinCount(histogram.copy(), newBinCount);
                 currentHistograms.put(columnName, histogram);
+                if (followSession != null) {
+                    followSession.histogramBinCounts.put(columnName, newBinCount);
+                }
 
                 // 找到对应的Histogram Canvas并重新渲染
                 Canvas histogramCanvas = findHistogramCanvas(columnName);
@@ -389,12 +443,12 @@ public class HelloController implements Initializable {
         }
 
         // 获取当前TableView的列顺序
-        ObservableList<TableColumn<Map<String, String>, ?>> columns = csvTableView.getColumns();
+        ObservableList<TableColumn<CsvRow, ?>> columns = csvTableView.getColumns();
 
         // 创建新的Histogram顺序列表
-        List<javafx.scene.Node> reorderedHistograms = new java.util.ArrayList<>();
+        List<javafx.scene.Node> reorderedHistograms = new ArrayList<>();
 
-        for (TableColumn<Map<String, String>, ?> column : columns) {
+        for (TableColumn<CsvRow, ?> column : columns) {
             String columnName = column.getText();
 
             // 在现有的Histogram容器中找到对应的Histogram
@@ -478,15 +532,13 @@ public class HelloController implements Initializable {
         });
     }
 
-    // 3. 在generateAllMatrices()方法之后添加生成所有Histogram的方法
-    private void generateAllHistograms() {
-        if (currentCsvData == null || currentCsvData.getHeaders().isEmpty()) {
+    // 3. 在showAllMatrices()方法之后添加显示所有Histogram的方法（Histogram由后台加载任务生成）
+    private void showAllHistograms() {
+        if (currentCsvData == null || currentHistograms == null) {
             return;
         }
 
         try {
-            currentHistograms = histogramService.generateAllHistograms(currentCsvData, 6);
-
             histogramRowContainer.getChildren().clear();
             histogramRowContainer.setAlignment(Pos.TOP_LEFT); // 设置容器左对齐
             histogramRowContainer.setSpacing(170.0); // 调整间距以匹配CSV列宽(450-280=170)
@@ -871,40 +923,527 @@ public class HelloController implements Initializable {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("选择CSV文件");
 
-        // 设置文件扩展名过滤器
-        FileChooser.ExtensionFilter csvFilter = new FileChooser.ExtensionFilter("CSV文件 (*.csv)", "*.csv");
-        fileChooser.getExtensionFilters().add(csvFilter);
+        // 设置文件扩展名过滤器（支持gzip/zip压缩的CSV，以及JSON Lines/JSON数组）
+        FileChooser.ExtensionFilter csvFilter = new FileChooser.ExtensionFilter(
+                "CSV文件 (*.csv, *.csv.gz, *.zip)", "*.csv", "*.gz", "*.zip");
+        FileChooser.ExtensionFilter jsonFilter = new FileChooser.ExtensionFilter(
+                "JSON文件 (*.json, *.jsonl, *.ndjson)", "*.json", "*.jsonl", "*.ndjson", "*.gz");
+        fileChooser.getExtensionFilters().addAll(csvFilter, jsonFilter);
 
         // 显示文件选择对话框
         File selectedFile = fileChooser.showOpenDialog(mainContainer.getScene().getWindow());
 
-        if (selectedFile != null) {
-            try {
-                // 使用CsvParsingService处理CSV文件
-                currentCsvData = csvParsingService.loadAndAnalyzeCsv(selectedFile);
+        if (selectedFile == null) {
+            return;
+        }
 
-                // 更新表格显示
-                updateCsvTable();
+        // JSON按记录流式读取，没有zip条目和列选择
+        if (jsonIngestService.isJsonFile(selectedFile)) {
+            loadCsvInBackground(selectedFile, null, null);
+            return;
+        }
 
-                // 生成所有列的Matrix
-                generateAllMatrices();
+        String zipEntryName = null;
+        List<String> selectedColumns = null;
+        try {
+            // zip中有多个CSV时让用户选择条目
+            List<String> zipEntries = csvParsingService.listZipEntries(selectedFile);
+            if (zipEntries.size() > 1) {
+                ChoiceDialog<String> dialog = new ChoiceDialog<>(zipEntries.get(0), zipEntries);
+                dialog.setTitle("选择CSV文件");
+                dialog.setHeaderText(selectedFile.getName() + " 包含多个CSV文件");
+                dialog.setContentText("要加载的文件:");
+                Optional<String> entryName = dialog.showAndWait();
+                if (entryName.isEmpty()) {
+                    return;
+                }
+                zipEntryName = entryName.get();
+            }
 
+            // 宽表只加载选中的列
+            if (zipEntryName == null) {
+                List<String> headers = csvParsingService.readHeaders(selectedFile);
+                if (headers.size() > COLUMN_SELECTION_THRESHOLD) {
+                    Optional<List<String>> columns = showColumnSelectionDialog(selectedFile, headers);
+                    if (columns.isEmpty()) {
+                        return;
+                    }
+                    selectedColumns = columns.get();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            showAlert("错误", e.getMessage());
+            return;
+        } catch (IOException e) {
+            System.err.println("CSV文件处理失败: " + e.getMessage());
+            e.printStackTrace();
+            showAlert("错误", "CSV文件处理失败: " + e.getMessage());
+            return;
+        }
 
-                generateAllHistograms();
+        loadCsvInBackground(selectedFile, zipEntryName, selectedColumns);
+    }
 
+    // 编辑空值标记（逗号分隔，不区分大小写），之后导入的文件生效
+    @FXML
+    private void handleEditNullTokens() {
+        TextInputDialog dialog = new TextInputDialog(csvParsingService.getNullTokens().toString());
+        dialog.setTitle("空值标记");
+        dialog.setHeaderText("这些值按空值处理（逗号分隔，不区分大小写），重新导入后生效");
+        dialog.setContentText("空值标记:");
+        dialog.getEditor().setPrefColumnCount(30);
+
+        Optional<String> text = dialog.showAndWait();
+        if (text.isEmpty()) {
+            return;
+        }
+        NullTokenSet nullTokens = NullTokenSet.parse(text.get());
+        csvParsingService.setNullTokens(nullTokens);
+        jsonIngestService.setNullTokens(nullTokens);
+    }
 
-                // 输出处理完成信息到控制台
-                System.out.println(selectedFile.getName() + " 处理完成");
+    // 列选择对话框，默认全部选中；取消或一列都没选时返回空
+    private Optional<List<String>> showColumnSelectionDialog(File file, List<String> headers) {
+        Map<String, BooleanProperty> checked = new LinkedHashMap<>();
+        for (String header : headers) {
+            checked.put(header, new SimpleBooleanProperty(true));
+        }
 
-            } catch (IOException e) {
+        ListView<String> listView = new ListView<>(FXCollections.observableArrayList(headers));
+        listView.setCellFactory(CheckBoxListCell.forListView(checked::get));
+        listView.setPrefHeight(400);
+
+        Dialog<List<String>> dialog = new Dialog<>();
+        dialog.setTitle("选择要加载的列");
+        dialog.setHeaderText(file.getName() + " 共有 " + headers.size() + " 列，只加载选中的列");
+        dialog.getDialogPane().setContent(listView);
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        dialog.setResultConverter(button -> {
+            if (button != ButtonType.OK) {
+                return null;
+            }
+            List<String> selected = new ArrayList<>();
+            checked.forEach((header, property) -> {
+                if (property.get()) {
+                    selected.add(header);
+                }
+            });
+            return selected;
+        });
+
+        return dialog.showAndWait().filter(selected -> !selected.isEmpty());
+    }
+
+    // 在后台线程加载CSV：先显示前几千行的预览，随着解析推进逐步细化，完成后显示完整结果
+    private void loadCsvInBackground(File file, String zipEntryName, List<String> selectedColumns) {
+        stopFollowing();
+
+        Task<LoadedCsv> loadTask = new Task<>() {
+            // 各阶段在循环中检查该任务，取消后尽快停止并释放已解析的数据
+            private final ImportJob job = new ImportJob(this::showStageProgress);
+            // 预览分析不报告进度（否则进度条会在解析过程中回退），导入取消或解析完成时一并取消
+            private final ImportJob previewJob = new ImportJob();
+            // 等待分析的最新预览：分析跟不上解析时跳过中间的预览
+            private final AtomicReference<CsvData> pendingPreview = new AtomicReference<>();
+
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                job.cancel();
+                previewJob.cancel();
+                return super.cancel(mayInterruptIfRunning);
+            }
+
+            @Override
+            protected LoadedCsv call() throws Exception {
+                updateMessage("正在读取 " + file.getName());
+
+                CsvData csvData;
+                if (jsonIngestService.isJsonFile(file)) {
+                    csvData = jsonIngestService.loadJson(file, job);
+                } else if (zipEntryName != null) {
+                    csvData = csvParsingService.loadAndAnalyzeZipEntry(file, zipEntryName);
+                } else {
+                    // 有快照时直接恢复，否则渐进解析
+                    csvData = csvParsingService.loadAndAnalyzeCsvCached(file, selectedColumns, new CsvLoadListener() {
+                        @Override
+                        public void onProgress(long bytesRead, long totalBytes, int rowsParsed) {
+                            if (totalBytes < 0) {
+                                // 压缩文件的解压后大小未知，进度条显示为不确定状态
+                                updateProgress(-1, 1);
+                                updateMessage(String.format("%.1f MB, %d 行", bytesRead / 1048576.0, rowsParsed));
+                                return;
+                            }
+                            updateProgress(bytesRead, totalBytes);
+                            updateMessage(String.format("%.1f / %.1f MB, %d 行",
+                                    bytesRead / 1048576.0, totalBytes / 1048576.0, rowsParsed));
+                        }
+
+                        @Override
+                        public void onPreview(CsvData preview) {
+                            // 预览的Matrix和Histogram在预览线程上计算，解析线程继续解析
+                            if (pendingPreview.getAndSet(preview) == null) {
+                                previewExecutor.execute(() -> analyzePreview());
+                            }
+                        }
+                    }, job);
+                }
+                previewJob.cancel();
+
+                try {
+                    return analyzeCsv(csvData, job);
+                } catch (CancellationException e) {
+                    csvParsingService.release(csvData);
+                    throw e;
+                }
+            }
+
+            // 在预览线程上分析最新的预览，显示前确认导入仍在进行（完整结果已显示时不再用预览替换）
+            private void analyzePreview() {
+                CsvData preview = pendingPreview.getAndSet(null);
+                if (preview == null) {
+                    return;
+                }
+                LoadedCsv loaded;
+                try {
+                    loaded = analyzeCsv(preview, previewJob);
+                } catch (CancellationException e) {
+                    return;
+                }
+                Platform.runLater(() -> {
+                    if (getState() == State.RUNNING) {
+                        showLoadedCsv(loaded);
+                    }
+                });
+            }
+
+            // 解析阶段的进度由CsvLoadListener显示（包括行数），其他阶段显示已处理的列数
+            private void showStageProgress(ImportJob.Stage stage, long done, long total) {
+                if (stage == ImportJob.Stage.PARSE) {
+                    return;
+                }
+                updateProgress(done, total);
+                updateMessage(String.format("%s: %d / %d 列", stage.getLabel(), done, total));
+            }
+        };
+
+        loadProgressBar.progressProperty().bind(loadTask.progressProperty());
+        loadProgressLabel.textProperty().bind(loadTask.messageProperty());
+        setLoadProgressVisible(true);
+        setCancelImportVisible(true);
+        importCsvBtn.setDisable(true);
+        currentLoadTask = loadTask;
+
+        CsvData previousData = currentCsvData;
+        loadTask.setOnCancelled(event -> {
+            // 由重置取消时界面已经清理，之后可能已开始新的导入
+            if (currentLoadTask != loadTask) {
+                System.out.println(file.getName() + " 导入已取消");
+                return;
+            }
+            finishLoading();
+            // 已显示的预览是不完整的数据（之前的数据已被替换），一并清除
+            if (currentCsvData != previousData) {
+                handleResetAll();
+            }
+            System.out.println(file.getName() + " 导入已取消");
+        });
+
+        loadTask.setOnSucceeded(event -> {
+            // 取消前已经完成的导入：界面已被重置，丢弃结果
+            if (currentLoadTask != loadTask) {
+                csvParsingService.release(loadTask.getValue().csvData);
+                return;
+            }
+            showLoadedCsv(loadTask.getValue());
+            currentCsvFile = file;
+            currentSelectedColumns = selectedColumns;
+            finishLoading();
+
+            // 输出处理完成信息到控制台
+            System.out.println(file.getName() + " 处理完成");
+        });
+
+        loadTask.setOnFailed(event -> {
+            finishLoading();
+
+            Throwable e = loadTask.getException();
+            if (e instanceof IOException) {
                 System.err.println("CSV文件处理失败: " + e.getMessage());
                 e.printStackTrace();
                 showAlert("错误", "CSV文件处理失败: " + e.getMessage());
-            } catch (Exception e) {
+            } else {
                 System.err.println("处理CSV文件时发生错误: " + e.getMessage());
                 e.printStackTrace();
                 showAlert("错误", "处理CSV文件时发生错误: " + e.getMessage());
             }
+        });
+
+        Thread loadThread = new Thread(loadTask, "csv-loader");
+        loadThread.setDaemon(true);
+        loadThread.start();
+    }
+
+    // 计算一份CSV数据的Matrix和Histogram（在后台线程调用），job不为null时报告分箱和视图生成进度并检查取消
+    private LoadedCsv analyzeCsv(CsvData csvData, ImportJob job) {
+        Map<String, Histogram> histograms = histogramService.generateAllHistograms(csvData, 6, job);
+        return new LoadedCsv(csvData, matrixService.generateAllMatrices(csvData, 6, job), histograms);
+    }
+
+    // 显示加载结果（预览或完整数据）
+    private void showLoadedCsv(LoadedCsv loaded) {
+        // 被替换的数据不再使用，释放其堆外存储（预览是堆内副本，不持有存储）
+        if (currentCsvData != null && currentCsvData.getOffHeapStorage() != loaded.csvData.getOffHeapStorage()) {
+            csvParsingService.release(currentCsvData);
+        }
+        currentCsvData = loaded.csvData;
+        currentMatrices = loaded.matrices;
+        currentHistograms = loaded.histograms;
+
+        updateCsvTable();
+        showAllMatrices();
+        showAllHistograms();
+    }
+
+    // 跟踪模式开关：打开时重新加载完整文件并监视追加的新行
+    @FXML
+    private void handleToggleFollow() {
+        if (!followCsvBtn.isSelected()) {
+            stopFollowing();
+            return;
+        }
+        if (currentCsvFile == null) {
+            followCsvBtn.setSelected(false);
+            showAlert("Alert", "No CSV data loaded. Click 'Import CSV' to load a file.");
+            return;
+        }
+
+        File file = currentCsvFile;
+        List<String> selectedColumns = currentSelectedColumns;
+        Task<FollowSession> followTask = new Task<>() {
+            @Override
+            protected FollowSession call() throws Exception {
+                updateMessage("正在读取 " + file.getName());
+                // 加载的数据和分析结果留给监视线程追加新行，界面显示副本
+                FollowSession session = new FollowSession(
+                        analyzeCsv(csvParsingService.loadForFollow(file, selectedColumns), null));
+                session.shown = copyOf(session);
+                return session;
+            }
+        };
+
+        loadProgressBar.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+        loadProgressLabel.textProperty().bind(followTask.messageProperty());
+        setLoadProgressVisible(true);
+        importCsvBtn.setDisable(true);
+        followCsvBtn.setDisable(true);
+
+        followTask.setOnSucceeded(event -> {
+            finishLoading();
+            followCsvBtn.setDisable(false);
+            FollowSession session = followTask.getValue();
+            if (!followCsvBtn.isSelected()) {
+                csvParsingService.release(session.csvData);
+                return; // 加载期间已关闭跟踪
+            }
+
+            showFollowedRecords(session, session.shown);
+            followSession = session;
+            followOffset = session.csvData.getCommittedOffset();
+            try {
+                csvFileWatcher = new CsvFileWatcher(file, () -> readAppendedRecords(file, session));
+                System.out.println("开始跟踪 " + file.getName());
+            } catch (IOException e) {
+                System.err.println("无法监视文件: " + e.getMessage());
+                followCsvBtn.setSelected(false);
+                showAlert("错误", "无法监视文件: " + e.getMessage());
+            }
+        });
+
+        followTask.setOnFailed(event -> {
+            finishLoading();
+            followCsvBtn.setDisable(false);
+            followCsvBtn.setSelected(false);
+
+            Throwable e = followTask.getException();
+            System.err.println("跟踪模式加载失败: " + e.getMessage());
+            showAlert("错误", "跟踪模式加载失败: " + e.getMessage());
+        });
+
+        Thread followThread = new Thread(followTask, "csv-loader");
+        followThread.setDaemon(true);
+        followThread.start();
+    }
+
+    // 在监视线程上读取并合并新追加的完整记录，UI线程只负责换入结果
+    // 新行追加到跟踪的数据，Matrix和Histogram在监视线程上原地累加新行（新值超出现有分箱时才重新生成），
+    // 界面显示它们的副本：副本共享已写入的列数据和行号，只复制每个箱的计数
+    private void readAppendedRecords(File file, FollowSession session) {
+        try {
+            CsvData appended = csvParsingService.readAppendedRecords(file, session.csvData, followOffset);
+            if (appended == null) {
+                return;
+            }
+            followOffset = appended.getCommittedOffset();
+
+            LoadedCsv base = session.shown;
+            int fromRow = csvParsingService.appendRecords(session.csvData, appended);
+            // 用户在界面上调整过分箱数量的列，先按调整后的数量重新分箱（还没有数据时留到之后）
+            session.matrices.replaceAll((columnName, matrix) -> {
+                Integer binCount = session.matrixBinCounts.get(columnName);
+                if (binCount != null && !matrix.getOriginalValues().isEmpty()) {
+                    session.matrixBinCounts.remove(columnName, binCount);
+                    if (isRebinnable(binCount, matrix.getActualBinCount())) {
+                        matrix = matrixService.updateSingleMatrixBinCount(matrix, binCount);
+                    }
+                }
+                return matrixService.appendRows(matrix, session.csvData, fromRow);
+            });
+            session.histograms.replaceAll((columnName, histogram) -> {
+                Integer binCount = session.histogramBinCounts.get(columnName);
+                if (binCount != null && !histogram.getOriginalValues().isEmpty()) {
+                    session.histogramBinCounts.remove(columnName, binCount);
+                    if (isRebinnable(binCount, histogram.getActualBinCount())) {
+                        histogram = histogramService.updateSingleHistogramBinCount(histogram, binCount);
+                    }
+                }
+                return histogramService.appendRows(histogram, session.csvData, fromRow);
+            });
+
+            LoadedCsv updated = copyOf(session);
+            Platform.runLater(() -> applyFollowedRecords(session, base, updated));
+        } catch (IllegalStateException e) {
+            Platform.runLater(() -> {
+                if (session == followSession) {
+                    stopFollowing();
+                    showAlert("错误", e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("读取追加的记录失败: " + e.getMessage());
+        }
+    }
+
+    // 跟踪的数据和分析结果的副本，之后监视线程的追加不影响副本
+    private LoadedCsv copyOf(FollowSession session) {
+        CsvData csvData = csvParsingService.copyOf(session.csvData);
+        Map<String, Matrix> matrices = new LinkedHashMap<>();
+        session.matrices.forEach((columnName, matrix) ->
+                matrices.put(columnName, matrixService.copyOf(matrix, csvData)));
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        session.histograms.forEach((columnName, histogram) ->
+                histograms.put(columnName, histogramService.copyOf(histogram, csvData)));
+        return new LoadedCsv(csvData, matrices, histograms);
+    }
+
+    // 换入监视线程合并好的结果
+    private void applyFollowedRecords(FollowSession session, LoadedCsv base, LoadedCsv updated) {
+        if (session != followSession) {
+            return; // 已停止跟踪或加载了其他数据
+        }
+
+        // 合并期间用户调整过分箱数量的列，按调整后的数量重新分箱
+        updated.matrices.replaceAll((columnName, matrix) -> {
+            Matrix current = currentMatrices.get(columnName);
+            if (current == null || current == base.matrices.get(columnName)
+                    || !isRebinnable(current.getActualBinCount(), matrix.getActualBinCount())) {
+                return matrix;
+            }
+            return matrixService.updateSingleMatrixBinCount(matrix, current.getActualBinCount());
+        });
+        updated.histograms.replaceAll((columnName, histogram) -> {
+            Histogram current = currentHistograms.get(columnName);
+            if (current == null || current == base.histograms.get(columnName)
+                    || !isRebinnable(current.getActualBinCount(), histogram.getActualBinCount())) {
+                return histogram;
+            }
+            return histogramService.updateSingleHistogramBinCount(histogram, current.getActualBinCount());
+        });
+
+        showFollowedRecords(session, updated);
+    }
+
+    private boolean isRebinnable(int binCount, int mergedBinCount) {
+        return binCount != mergedBinCount
+                && binCount >= BinningService.MIN_BIN_COUNT && binCount <= BinningService.MAX_BIN_COUNT;
+    }
+
+    // 显示跟踪数据的结果，并记下显示的对象（Map另存一份），下一次合并时据此判断用户是否调整过分箱
+    private void showFollowedRecords(FollowSession session, LoadedCsv loaded) {
+        showLoadedCsv(loaded);
+        session.shown = new LoadedCsv(currentCsvData,
+                new LinkedHashMap<>(currentMatrices), new LinkedHashMap<>(currentHistograms));
+    }
+
+    private void stopFollowing() {
+        if (csvFileWatcher != null) {
+            try {
+                csvFileWatcher.close();
+            } catch (IOException e) {
+                System.err.println("停止监视文件时出错: " + e.getMessage());
+            }
+            csvFileWatcher = null;
+        }
+        followSession = null;
+        followCsvBtn.setSelected(false);
+    }
+
+    private void finishLoading() {
+        loadProgressBar.progressProperty().unbind();
+        loadProgressLabel.textProperty().unbind();
+        setLoadProgressVisible(false);
+        setCancelImportVisible(false);
+        importCsvBtn.setDisable(false);
+        currentLoadTask = null;
+    }
+
+    // 取消正在进行的导入：各阶段在下一次检查时停止，已解析的数据在后台线程上释放
+    @FXML
+    private void handleCancelImport() {
+        if (currentLoadTask != null) {
+            currentLoadTask.cancel(false);
+        }
+    }
+
+    private void setCancelImportVisible(boolean visible) {
+        cancelImportBtn.setVisible(visible);
+        cancelImportBtn.setManaged(visible);
+    }
+
+    private void setLoadProgressVisible(boolean visible) {
+        loadProgressBar.setVisible(visible);
+        loadProgressBar.setManaged(visible);
+        loadProgressLabel.setVisible(visible);
+        loadProgressLabel.setManaged(visible);
+    }
+
+    // 后台加载的结果：数据和对应的Matrix、Histogram
+    private static class LoadedCsv {
+        private final CsvData csvData;
+        private final Map<String, Matrix> matrices;
+        private final Map<String, Histogram> histograms;
+
+        LoadedCsv(CsvData csvData, Map<String, Matrix> matrices, Map<String, Histogram> histograms) {
+            this.csvData = csvData;
+            this.matrices = matrices;
+            this.histograms = histograms;
+        }
+    }
+
+    // 跟踪模式的数据：csvData、matrices和histograms只在监视线程上追加新行，界面显示的是它们的副本
+    private static class FollowSession {
+        private final CsvData csvData;
+        private final Map<String, Matrix> matrices;
+        private final Map<String, Histogram> histograms;
+        // 用户在界面上调整的分箱数量，监视线程在下一次追加前按它重新分箱
+        private final Map<String, Integer> matrixBinCounts = new ConcurrentHashMap<>();
+        private final Map<String, Integer> histogramBinCounts = new ConcurrentHashMap<>();
+        // 界面最近一次显示的结果
+        private volatile LoadedCsv shown;
+
+        FollowSession(LoadedCsv loaded) {
+            this.csvData = loaded.csvData;
+            this.matrices = loaded.matrices;
+            this.histograms = loaded.histograms;
         }
     }
 
@@ -932,7 +1471,9 @@ public class HelloController implements Initializable {
             final int columnIndex = colIndex;
             String header = headers.get(colIndex);
 
-            TableColumn<Map<String, String>, String> column = new TableColumn<>(header);
+            ColumnVector columnVector = currentCsvData.getColumn(header);
+
+            TableColumn<CsvRow, String> column = new TableColumn<>(header);
             column.setPrefWidth(450.0);
             column.setMinWidth(450.0);
 
@@ -942,13 +1483,11 @@ public class HelloController implements Initializable {
             // 设置列标题样式（加粗）
             column.setStyle("-fx-font-weight: bold;");
 
-            // 设置单元格值工厂
+            // 设置单元格值工厂：表格的行都是CsvData.getRows()的行视图，自带行索引，
+            // 值直接从列向量读取，只为可见的单元格生成
             column.setCellValueFactory(cellData -> {
-                Map<String, String> rowData = cellData.getValue();
-                String value = rowData.get(header);
-
-                // 获取行索引
-                int rowIndex = csvTableView.getItems().indexOf(rowData);
+                int rowIndex = cellData.getValue().getRowIndex();
+                String value = columnVector.get(rowIndex);
 
                 // 格式化显示：[x, y] 数据值
                 String displayValue = String.format("[%d, %d] %s",
@@ -961,8 +1500,8 @@ public class HelloController implements Initializable {
         }
 
 
-        // 设置数据
-        ObservableList<Map<String, String>> data = FXCollections.observableArrayList(currentCsvData.getRows());
+        // 设置数据：包装行视图而不复制，行对象在TableView取用时才创建
+        ObservableList<CsvRow> data = FXCollections.observableList(currentCsvData.getRows());
         csvTableView.setItems(data);
 
         // 更新信息标签 - 新格式
@@ -981,12 +1520,12 @@ public class HelloController implements Initializable {
         }
 //        System.out.println("Hi");
         // 获取当前TableView的列顺序
-        ObservableList<TableColumn<Map<String, String>, ?>> columns = csvTableView.getColumns();
+        ObservableList<TableColumn<CsvRow, ?>> columns = csvTableView.getColumns();
 
         // 创建新的Matrix顺序列表
-        List<javafx.scene.Node> reorderedMatrices = new java.util.ArrayList<>();
+        List<javafx.scene.Node> reorderedMatrices = new ArrayList<>();
 
-        for (TableColumn<Map<String, String>, ?> column : columns) {
+        for (TableColumn<CsvRow, ?> column : columns) {
             String columnName = column.getText();
 
             // 在现有的Matrix容器中找到对应的Matrix
@@ -1030,8 +1569,9 @@ public class HelloController implements Initializable {
 
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Save .CSV File");
-        fileChooser.getExtensionFilters().add(
-                new FileChooser.ExtensionFilter("CSV file (*.csv)", "*.csv"));
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV file (*.csv)", "*.csv"),
+                new FileChooser.ExtensionFilter("Gzip CSV file (*.csv.gz)", "*.csv.gz"));
 
         File file = fileChooser.showSaveDialog(mainContainer.getScene().getWindow());
 
@@ -1048,6 +1588,15 @@ public class HelloController implements Initializable {
 
     @FXML
     private void handleResetAll() {
+        // 先取消正在进行的导入，避免导入完成（或显示预览）后再填充刚清空的界面
+        if (currentLoadTask != null) {
+            currentLoadTask.cancel(false);
+            finishLoading();
+        }
+        stopFollowing();
+        currentCsvFile = null;
+        currentSelectedColumns = null;
+        csvParsingService.release(currentCsvData);
         currentCsvData = null;
         currentMatrices = null;
         currentHistograms = null; // 新增
@@ -1063,7 +1612,8 @@ public class HelloController implements Initializable {
         histogramRowContainer.setManaged(false);
 
         csvTableView.getColumns().clear();
-        csvTableView.getItems().clear();
+        // 行视图是只读的，换成空列表而不是clear()
+        csvTableView.setItems(FXCollections.observableArrayList());
 
         // 显示无数据提示，隐藏表格
         noDataLabel.setVisible(true);
@@ -0,0 +1,59 @@
+package com.example.rulerDesktop.model;
+
+/**
+ * 列概况：一次遍历列数据得到的类型和统计信息
+ */
+public class ColumnProfile {
+
+    public static final String TYPE_NUMERIC = "NUMERIC";
+    public static final String TYPE_DATE = "DATE";
+    public static final String TYPE_TEXT = "TEXT";
+    public static final String TYPE_EMPTY = "EMPTY";
+
+    private String columnName;
+    private String type;
+    private int nonEmptyCount;
+    private int nullCount;
+    private int numericCount;
+    private int dateCount;
+    // 数值的最小值和最大值，没有数值时为NaN
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    // 数值的最大小数位数
+    private int precision;
+    // 不同值数量（字典编码列为精确值，否则为HyperLogLog估算值）
+    private long distinctCount;
+    private boolean distinctCountExact;
+
+    public ColumnProfile() {}
+
+    public ColumnProfile(String columnName) {
+        this.columnName = columnName;
+    }
+
+    public boolean isNumeric() { return TYPE_NUMERIC.equals(type); }
+
+    // Getters and Setters
+    public String getColumnName() { return columnName; }
+    public void setColumnName(String columnName) { this.columnName = columnName; }
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+    public int getNonEmptyCount() { return nonEmptyCount; }
+    public void setNonEmptyCount(int nonEmptyCount) { this.nonEmptyCount = nonEmptyCount; }
+    public int getNullCount() { return nullCount; }
+    public void setNullCount(int nullCount) { this.nullCount = nullCount; }
+    public int getNumericCount() { return numericCount; }
+    public void setNumericCount(int numericCount) { this.numericCount = numericCount; }
+    public int getDateCount() { return dateCount; }
+    public void setDateCount(int dateCount) { this.dateCount = dateCount; }
+    public double getMin() { return min; }
+    public void setMin(double min) { this.min = min; }
+    public double getMax() { return max; }
+    public void setMax(double max) { this.max = max; }
+    public int getPrecision() { return precision; }
+    public void setPrecision(int precision) { this.precision = precision; }
+    public long getDistinctCount() { return distinctCount; }
+    public void setDistinctCount(long distinctCount) { this.distinctCount = distinctCount; }
+    public boolean isDistinctCountExact() { return distinctCountExact; }
+    public void setDistinctCountExact(boolean distinctCountExact) { this.distinctCountExact = distinctCountExact; }
+}
@@ -0,0 +1,459 @@
+package com.example.rulerDesktop.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 列向量：按列存储一列的所有值
+ * 低基数列使用字典编码，每行只保存一个int编码，相同的值在字典中只保存一份；
+ * 不同值数量超过DICTIONARY_LIMIT后自动转为直接保存字符串；
+ * 数值列另外保存一份解码后的double数组（见NumericColumn），追加新值后失效；
+ * 字典编码列还缓存标准化后的字典（与字典按编码对应），字典只会追加，新增的值由DataNormalizationService按需补齐。
+ * 创建时指定空值标记（见NullTokenSet）的列在追加时就判断值是否为空值标记：字典编码列每个不同值判断一次，
+ * 直接存储的列逐行判断，结果保存为位图，之后标准化时不再匹配字符串。
+ * 使用OffHeapStorage创建的列把编码和字符串保存在堆外（见OffHeapArray、OffHeapStringArray），读取接口不变。
+ * 行数据、字典和位图只在末尾追加（或换成更大的新数组），已写入的内容不再修改，
+ * 因此copy()得到的副本可以与原列共享数据，向副本追加前才复制
+ */
+public class ColumnVector {
+
+    // 字典编码允许的最大不同值数量
+    public static final int DICTIONARY_LIMIT = 1 << 16;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String name;
+    private int size;
+
+    // 字典编码存储
+    private int[] codes;
+    // 字典按编码顺序保存在数组的前dictionarySize个位置，只追加
+    private String[] dictionary;
+    private int dictionarySize;
+    // 值到编码的索引，副本在追加前才建立（见unshare()）
+    private Map<String, Integer> dictionaryIndex;
+
+    // 直接存储（高基数列）
+    private String[] values;
+
+    // 堆外存储，为null时使用上面的堆内数组
+    private final OffHeapStorage storage;
+    private OffHeapArray offHeapCodes;
+    private OffHeapStringArray offHeapValues;
+    // 数据是否与另一列共享（copy()的结果），共享时追加前先复制
+    private boolean shared;
+
+    // 数值列解码后的数值，未解码或已失效时为null
+    private NumericColumn numericColumn;
+
+    // 标准化后的字典，下标为编码；可能短于字典（之后新增的值尚未标准化），转为直接存储后为null
+    private String[] normalizedDictionary;
+
+    // 空值标记，为null时没有值被标记为空值（标准化和概况只把null/空白当作空值）
+    private NullTokenSet nullTokens;
+    // 是空值标记的编码（字典编码列）和行（直接存储的列）的位图
+    private long[] nullTokenCodes = new long[0];
+    private long[] nullTokenRows = new long[0];
+
+    public ColumnVector(String name) {
+        this(name, null);
+    }
+
+    /**
+     * @param storage 堆外存储，为null时数据保存在堆内
+     */
+    public ColumnVector(String name, OffHeapStorage storage) {
+        this(name, storage, null);
+    }
+
+    /**
+     * @param storage 堆外存储，为null时数据保存在堆内
+     * @param nullTokens 空值标记，为null时没有值被标记为空值
+     */
+    public ColumnVector(String name, OffHeapStorage storage, NullTokenSet nullTokens) {
+        this.name = name;
+        this.storage = storage;
+        this.nullTokens = nullTokens;
+        this.dictionary = new String[INITIAL_CAPACITY];
+        this.dictionaryIndex = new HashMap<>();
+        if (storage != null) {
+            this.offHeapCodes = new OffHeapArray(storage, Integer.BYTES);
+        } else {
+            this.codes = new int[INITIAL_CAPACITY];
+        }
+    }
+
+    /**
+     * 由已有的字典和编码直接构建列（用于从快照恢复，不逐行查找字典）
+     */
+    public static ColumnVector ofDictionary(String name, List<String> dictionary, int[] codes) {
+        ColumnVector column = new ColumnVector(name);
+        column.dictionary = dictionary.toArray(new String[0]);
+        column.dictionarySize = column.dictionary.length;
+        column.indexDictionary();
+        column.codes = codes;
+        column.size = codes.length;
+        return column;
+    }
+
+    /**
+     * 由字符串数组直接构建非字典编码的列
+     */
+    public static ColumnVector ofValues(String name, String[] values) {
+        ColumnVector column = new ColumnVector(name);
+        column.values = values;
+        column.size = values.length;
+        column.codes = null;
+        column.dictionary = null;
+        column.dictionaryIndex = null;
+        return column;
+    }
+
+    /**
+     * 追加一个值
+     */
+    public void append(String value) {
+        numericColumn = null;
+        if (shared) {
+            unshare();
+        }
+        if (offHeapValues != null || values != null) {
+            if (nullTokens != null && nullTokens.matches(value)) {
+                nullTokenRows = setBit(nullTokenRows, size);
+            }
+            if (offHeapValues != null) {
+                offHeapValues.add(value);
+                size++;
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, size * 2));
+            }
+            values[size++] = value;
+            return;
+        }
+
+        Integer code = dictionaryIndex.get(value);
+        if (code == null) {
+            if (dictionarySize >= DICTIONARY_LIMIT) {
+                convertToPlain();
+                append(value);
+                return;
+            }
+            code = addToDictionary(value);
+        }
+
+        appendCode(code);
+    }
+
+    /**
+     * 把新值加入字典，同时判断是否为空值标记
+     *
+     * @return 新值的编码
+     */
+    private int addToDictionary(String value) {
+        int code = dictionarySize;
+        if (code == dictionary.length) {
+            dictionary = Arrays.copyOf(dictionary, Math.max(INITIAL_CAPACITY, code * 2));
+        }
+        dictionary[dictionarySize++] = value;
+        dictionaryIndex.put(value, code);
+        if (nullTokens != null && nullTokens.matches(value)) {
+            nullTokenCodes = setBit(nullTokenCodes, code);
+        }
+        return code;
+    }
+
+    private static long[] setBit(long[] bits, int index) {
+        if ((index >>> 6) >= bits.length) {
+            bits = Arrays.copyOf(bits, Math.max((index >>> 6) + 1, bits.length * 2));
+        }
+        bits[index >>> 6] |= 1L << index;
+        return bits;
+    }
+
+    private static boolean getBit(long[] bits, int index) {
+        return (index >>> 6) < bits.length && (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void appendCode(int code) {
+        if (offHeapCodes != null) {
+            offHeapCodes.putInt(size++, code);
+            return;
+        }
+        if (size == codes.length) {
+            codes = Arrays.copyOf(codes, Math.max(INITIAL_CAPACITY, size * 2));
+        }
+        codes[size++] = code;
+    }
+
+    /**
+     * 按顺序追加另一列的所有值（用于拼接并行解析的分段结果）
+     */
+    public void appendAll(ColumnVector other) {
+        numericColumn = null;
+        if (shared) {
+            unshare();
+        }
+        if (!isDictionaryEncoded() || !other.isDictionaryEncoded()
+                || dictionarySize + other.dictionarySize > DICTIONARY_LIMIT) {
+            for (int i = 0; i < other.size; i++) {
+                append(other.get(i));
+            }
+            return;
+        }
+
+        // 两列都是字典编码：只需重映射字典，不逐行查找
+        int[] remap = new int[other.dictionarySize];
+        for (int i = 0; i < remap.length; i++) {
+            String value = other.dictionary[i];
+            Integer code = dictionaryIndex.get(value);
+            if (code == null) {
+                code = addToDictionary(value);
+            }
+            remap[i] = code;
+        }
+
+        if (codes != null && size + other.size > codes.length) {
+            codes = Arrays.copyOf(codes, Math.max(size + other.size, codes.length * 2));
+        }
+        for (int i = 0; i < other.size; i++) {
+            appendCode(remap[other.codeAt(i)]);
+        }
+    }
+
+    /**
+     * 复制当前内容（之后对原列的追加不影响副本）
+     * 副本与原列共享已写入的数据，不复制：原列之后只在副本长度之外写入或换用新数组；
+     * 向副本追加前才复制一份（见unshare()）。用于跟踪模式下监视线程继续向原列追加、界面读取副本
+     */
+    public ColumnVector copy() {
+        ColumnVector copy = new ColumnVector(name, storage, nullTokens, size);
+        copy.codes = codes;
+        copy.dictionary = dictionary;
+        copy.dictionarySize = dictionarySize;
+        copy.values = values;
+        copy.offHeapCodes = offHeapCodes != null ? offHeapCodes.view() : null;
+        copy.offHeapValues = offHeapValues != null ? offHeapValues.view() : null;
+        copy.shared = true;
+        copy.numericColumn = numericColumn;
+        copy.normalizedDictionary = normalizedDictionary;
+        copy.nullTokenCodes = nullTokenCodes;
+        copy.nullTokenRows = nullTokenRows;
+        return copy;
+    }
+
+    /**
+     * 只设置名称和长度，数据由copy()填入
+     */
+    private ColumnVector(String name, OffHeapStorage storage, NullTokenSet nullTokens, int size) {
+        this.name = name;
+        this.storage = storage;
+        this.nullTokens = nullTokens;
+        this.size = size;
+    }
+
+    /**
+     * 复制当前内容到堆内：堆外列的副本不依赖原来的存储，存储关闭后仍可读取
+     */
+    public ColumnVector copyOnHeap() {
+        if (storage == null) {
+            return copy();
+        }
+        ColumnVector copy;
+        if (offHeapValues != null) {
+            String[] plain = new String[size];
+            for (int i = 0; i < size; i++) {
+                plain[i] = offHeapValues.get(i);
+            }
+            copy = ofValues(name, plain);
+        } else {
+            int[] heapCodes = new int[size];
+            for (int i = 0; i < size; i++) {
+                heapCodes[i] = offHeapCodes.getInt(i);
+            }
+            copy = ofDictionary(name, getDictionary(), heapCodes);
+            copy.normalizedDictionary = normalizedDictionary;
+        }
+        copy.nullTokens = nullTokens;
+        copy.nullTokenCodes = nullTokenCodes.clone();
+        copy.nullTokenRows = nullTokenRows.clone();
+        return copy;
+    }
+
+    /**
+     * 获取指定行的值
+     */
+    public String get(int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= size) {
+            throw new IndexOutOfBoundsException("行索引越界: " + rowIndex);
+        }
+        if (offHeapValues != null) {
+            return offHeapValues.get(rowIndex);
+        }
+        return values != null ? values[rowIndex] : dictionary[codeAt(rowIndex)];
+    }
+
+    /**
+     * 获取指定行的字典编码（仅字典编码列可用）
+     */
+    public int getCode(int rowIndex) {
+        if (!isDictionaryEncoded()) {
+            throw new IllegalStateException("列 '" + name + "' 未使用字典编码");
+        }
+        if (rowIndex < 0 || rowIndex >= size) {
+            throw new IndexOutOfBoundsException("行索引越界: " + rowIndex);
+        }
+        return codeAt(rowIndex);
+    }
+
+    /**
+     * 指定行的值是否为空值标记（按创建列时指定的NullTokenSet，在追加时已判断）
+     */
+    public boolean isNullToken(int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= size) {
+            throw new IndexOutOfBoundsException("行索引越界: " + rowIndex);
+        }
+        return isDictionaryEncoded() ? getBit(nullTokenCodes, codeAt(rowIndex)) : getBit(nullTokenRows, rowIndex);
+    }
+
+    /**
+     * 字典中指定编码的值是否为空值标记（仅字典编码列可用）
+     */
+    public boolean isNullTokenCode(int code) {
+        if (!isDictionaryEncoded()) {
+            throw new IllegalStateException("列 '" + name + "' 未使用字典编码");
+        }
+        return getBit(nullTokenCodes, code);
+    }
+
+    /**
+     * 更换空值标记，重新判断所有值（用于从快照恢复的列），依赖标准化结果的缓存一并失效
+     */
+    public void setNullTokens(NullTokenSet nullTokens) {
+        this.nullTokens = nullTokens;
+        numericColumn = null;
+        normalizedDictionary = null;
+        nullTokenCodes = new long[0];
+        nullTokenRows = new long[0];
+        if (nullTokens == null) {
+            return;
+        }
+        if (isDictionaryEncoded()) {
+            for (int code = 0; code < dictionarySize; code++) {
+                if (nullTokens.matches(dictionary[code])) {
+                    nullTokenCodes = setBit(nullTokenCodes, code);
+                }
+            }
+        } else {
+            for (int rowIndex = 0; rowIndex < size; rowIndex++) {
+                if (nullTokens.matches(get(rowIndex))) {
+                    nullTokenRows = setBit(nullTokenRows, rowIndex);
+                }
+            }
+        }
+    }
+
+    private int codeAt(int rowIndex) {
+        return codes != null ? codes[rowIndex] : offHeapCodes.getInt(rowIndex);
+    }
+
+    /**
+     * 释放追加时预留的多余容量
+     */
+    public void trimToSize() {
+        if (values != null) {
+            values = Arrays.copyOf(values, size);
+        } else if (codes != null) {
+            codes = Arrays.copyOf(codes, size);
+        }
+    }
+
+    /**
+     * 字典超出上限，转为直接存储
+     */
+    private void convertToPlain() {
+        // 空值标记的编码位图展开为行位图
+        for (int i = 0; i < size; i++) {
+            if (getBit(nullTokenCodes, codeAt(i))) {
+                nullTokenRows = setBit(nullTokenRows, i);
+            }
+        }
+        nullTokenCodes = new long[0];
+
+        if (storage != null) {
+            OffHeapStringArray plain = new OffHeapStringArray(storage);
+            for (int i = 0; i < size; i++) {
+                plain.add(dictionary[offHeapCodes.getInt(i)]);
+            }
+            offHeapValues = plain;
+            offHeapCodes = null;
+        } else {
+            String[] plain = new String[Math.max(INITIAL_CAPACITY, codes.length)];
+            for (int i = 0; i < size; i++) {
+                plain[i] = dictionary[codes[i]];
+            }
+            values = plain;
+            codes = null;
+        }
+        dictionary = null;
+        dictionarySize = 0;
+        dictionaryIndex = null;
+        normalizedDictionary = null;
+    }
+
+    /**
+     * 共享的数据复制为独立的一份，之后才能追加
+     */
+    private void unshare() {
+        shared = false;
+        if (offHeapValues != null) {
+            OffHeapStringArray own = new OffHeapStringArray(storage);
+            for (int i = 0; i < size; i++) {
+                own.add(offHeapValues.get(i));
+            }
+            offHeapValues = own;
+        } else if (offHeapCodes != null) {
+            OffHeapArray own = new OffHeapArray(storage, Integer.BYTES);
+            for (int i = 0; i < size; i++) {
+                own.putInt(i, offHeapCodes.getInt(i));
+            }
+            offHeapCodes = own;
+        } else if (values != null) {
+            values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, size));
+        } else {
+            codes = Arrays.copyOf(codes, Math.max(INITIAL_CAPACITY, size));
+        }
+        if (dictionary != null) {
+            dictionary = Arrays.copyOf(dictionary, Math.max(INITIAL_CAPACITY, dictionarySize));
+            indexDictionary();
+        }
+        nullTokenCodes = nullTokenCodes.clone();
+        nullTokenRows = nullTokenRows.clone();
+    }
+
+    private void indexDictionary() {
+        dictionaryIndex = new HashMap<>();
+        for (int code = 0; code < dictionarySize; code++) {
+            dictionaryIndex.put(dictionary[code], code);
+        }
+    }
+
+    public String getName() { return name; }
+    public int size() { return size; }
+    public boolean isDictionaryEncoded() { return values == null && offHeapValues == null; }
+    public OffHeapStorage getStorage() { return storage; }
+    public NumericColumn getNumericColumn() { return numericColumn; }
+    public void setNumericColumn(NumericColumn numericColumn) { this.numericColumn = numericColumn; }
+    public String[] getNormalizedDictionary() { return normalizedDictionary; }
+    public void setNormalizedDictionary(String[] normalizedDictionary) { this.normalizedDictionary = normalizedDictionary; }
+    public NullTokenSet getNullTokens() { return nullTokens; }
+    public List<String> getDictionary() {
+        return isDictionaryEncoded()
+                ? Collections.unmodifiableList(Arrays.asList(dictionary).subList(0, dictionarySize))
+                : Collections.emptyList();
+    }
+}
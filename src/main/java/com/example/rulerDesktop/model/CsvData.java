@@ -1,34 +1,133 @@
 package com.example.rulerDesktop.model;
 
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * CSV数据（列式存储）
+ * 每个标题对应一个ColumnVector，getRows()提供按行访问的行视图（见CsvRow）
+ */
 public class CsvData {
     private String fileName;
+    private Charset charset;
+    private CsvDialect dialect;
     private List<String> headers;
-    private List<Map<String, String>> rows;
+    private List<ColumnVector> columns = new ArrayList<>();
+    private Map<String, ColumnVector> columnsByName = new HashMap<>();
+    private Map<String, ColumnProfile> columnProfiles = new HashMap<>();
     private int totalRows;
     private int totalColumns;
+    // 已解析的源文件字节数（跟踪模式下追加解析的起点）
+    private long committedOffset;
+    // 各列在源文件记录中的字段位置（只加载部分列时，跟踪模式按此读取新记录），为null时为全部字段
+    private int[] fieldIndexes;
+    // 列数据的堆外存储，列在堆内时为null
+    private OffHeapStorage offHeapStorage;
 
     public CsvData() {}
 
     public CsvData(String fileName, List<String> headers, List<Map<String, String>> rows) {
         this.fileName = fileName;
         this.headers = headers;
-        this.rows = rows;
+        setRows(rows);
         this.totalRows = rows.size();
         this.totalColumns = headers.size();
     }
 
+    /**
+     * 行视图（只读），每行按需从列向量读取
+     */
+    public List<CsvRow> getRows() {
+        return new AbstractList<>() {
+            @Override
+            public CsvRow get(int index) {
+                if (index < 0 || index >= getRowCount()) {
+                    throw new IndexOutOfBoundsException("行索引越界: " + index);
+                }
+                return new CsvRow(CsvData.this, index);
+            }
+
+            @Override
+            public int size() {
+                return getRowCount();
+            }
+        };
+    }
+
+    /**
+     * 从行数据构建列存储（兼容旧的按行构建方式），使用默认的空值标记
+     */
+    public void setRows(List<Map<String, String>> rows) {
+        if (headers == null) {
+            headers = rows.isEmpty() ? new ArrayList<>() : new ArrayList<>(rows.get(0).keySet());
+        }
+
+        List<ColumnVector> newColumns = new ArrayList<>(headers.size());
+        for (String header : headers) {
+            ColumnVector column = new ColumnVector(header, null, NullTokenSet.DEFAULT);
+            for (Map<String, String> row : rows) {
+                column.append(row.get(header));
+            }
+            column.trimToSize();
+            newColumns.add(column);
+        }
+        setColumns(newColumns);
+    }
+
+    /**
+     * 按列名获取列向量，不存在时返回null
+     */
+    public ColumnVector getColumn(String columnName) {
+        return columnsByName.get(columnName);
+    }
+
+    /**
+     * 按列名获取列概况，未分析时返回null
+     */
+    public ColumnProfile getColumnProfile(String columnName) {
+        return columnProfiles.get(columnName);
+    }
+
+    /**
+     * 实际存储的行数
+     */
+    public int getRowCount() {
+        return columns.isEmpty() ? 0 : columns.get(0).size();
+    }
+
     // Getters and Setters
     public String getFileName() { return fileName; }
     public void setFileName(String fileName) { this.fileName = fileName; }
+    public Charset getCharset() { return charset; }
+    public void setCharset(Charset charset) { this.charset = charset; }
+    public CsvDialect getDialect() { return dialect; }
+    public void setDialect(CsvDialect dialect) { this.dialect = dialect; }
     public List<String> getHeaders() { return headers; }
     public void setHeaders(List<String> headers) { this.headers = headers; }
-    public List<Map<String, String>> getRows() { return rows; }
-    public void setRows(List<Map<String, String>> rows) { this.rows = rows; }
+    public List<ColumnVector> getColumns() { return columns; }
+    public void setColumns(List<ColumnVector> columns) {
+        this.columns = columns;
+        this.columnsByName = new HashMap<>();
+        for (ColumnVector column : columns) {
+            columnsByName.put(column.getName(), column);
+        }
+        // 列数据已替换，原有的概况失效
+        this.columnProfiles = new HashMap<>();
+    }
+    public Map<String, ColumnProfile> getColumnProfiles() { return columnProfiles; }
+    public void setColumnProfiles(Map<String, ColumnProfile> columnProfiles) { this.columnProfiles = columnProfiles; }
     public int getTotalRows() { return totalRows; }
     public void setTotalRows(int totalRows) { this.totalRows = totalRows; }
     public int getTotalColumns() { return totalColumns; }
     public void setTotalColumns(int totalColumns) { this.totalColumns = totalColumns; }
+    public long getCommittedOffset() { return committedOffset; }
+    public void setCommittedOffset(long committedOffset) { this.committedOffset = committedOffset; }
+    public int[] getFieldIndexes() { return fieldIndexes; }
+    public void setFieldIndexes(int[] fieldIndexes) { this.fieldIndexes = fieldIndexes; }
+    public OffHeapStorage getOffHeapStorage() { return offHeapStorage; }
+    public void setOffHeapStorage(OffHeapStorage offHeapStorage) { this.offHeapStorage = offHeapStorage; }
 }
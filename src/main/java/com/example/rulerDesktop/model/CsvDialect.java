@@ -0,0 +1,24 @@
+package com.example.rulerDesktop.model;
+
+/**
+ * CSV方言：分隔符、引号字符和第一条记录是否为标题行
+ */
+public class CsvDialect {
+
+    public static final CsvDialect DEFAULT = new CsvDialect(',', '"', true);
+
+    private final char delimiter;
+    private final char quote;
+    private final boolean hasHeader;
+
+    public CsvDialect(char delimiter, char quote, boolean hasHeader) {
+        this.delimiter = delimiter;
+        this.quote = quote;
+        this.hasHeader = hasHeader;
+    }
+
+    // Getters
+    public char getDelimiter() { return delimiter; }
+    public char getQuote() { return quote; }
+    public boolean hasHeader() { return hasHeader; }
+}
@@ -0,0 +1,61 @@
+package com.example.rulerDesktop.model;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 行视图：只读访问列存储中的一行（表格的行对象）
+ * 不复制数据，值在访问时从列向量中读取。
+ * 相等性按(所属CsvData, 行号)判断而不是按内容：内容相同的两行是不同的行，
+ * 表格的选中、焦点和查找不会落到第一个重复行上。不实现Map，需要按内容比较时用toMap()复制
+ */
+public class CsvRow {
+    private final CsvData csvData;
+    private final int rowIndex;
+
+    public CsvRow(CsvData csvData, int rowIndex) {
+        this.csvData = csvData;
+        this.rowIndex = rowIndex;
+    }
+
+    /**
+     * 获取指定列的值，列不存在时返回null
+     */
+    public String get(String columnName) {
+        ColumnVector column = csvData.getColumn(columnName);
+        return column != null ? column.get(rowIndex) : null;
+    }
+
+    /**
+     * 按标题顺序复制为普通Map
+     */
+    public Map<String, String> toMap() {
+        List<String> headers = csvData.getHeaders();
+        Map<String, String> row = new LinkedHashMap<>();
+        for (int i = 0; i < headers.size(); i++) {
+            row.put(headers.get(i), csvData.getColumns().get(i).get(rowIndex));
+        }
+        return row;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CsvRow)) {
+            return false;
+        }
+        CsvRow other = (CsvRow) o;
+        return csvData == other.csvData && rowIndex == other.rowIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(csvData) * 31 + rowIndex;
+    }
+
+    public CsvData getCsvData() { return csvData; }
+    public int getRowIndex() { return rowIndex; }
+}
@@ -12,18 +12,59 @@ public class Histogram {
     private int totalRecords;
     private List<String> orderedValues;
     private Map<String, Integer> valueFrequency;
-    private Map<String, List<DataPoint>> binDetails;
-    private List<String> originalValues;
+    private Map<String, RowIndexList> binRows; // 每个箱包含的行号，数据点在读取时才生成（见getBinDetails）
+    private List<String> originalValues; // 标准化后的值，通常是列向量的只读视图（见DataNormalizationService.normalizedView）
     private Map<String, String> valueToBinMapping;
+    private NumericColumn numericValues; // 数值列解码后的数值，与originalValues按行对应；非数值列为null
+    private ColumnVector column; // 生成时的列，用于生成数据点
+    private int columnIndex;
 
     public Histogram() {
         this.orderedValues = new ArrayList<>();
         this.valueFrequency = new LinkedHashMap<>();
-        this.binDetails = new LinkedHashMap<>();
+        this.binRows = new LinkedHashMap<>();
         this.originalValues = new ArrayList<>();
         this.valueToBinMapping = new LinkedHashMap<>();
     }
 
+    /**
+     * 复制当前内容（之后对原Histogram的追加和重新分箱不影响副本）
+     * 箱的行号列表共享已写入的部分（见RowIndexList.snapshot），原始值视图、列和数值解码结果共享；
+     * 值到箱的映射也共享：重新分箱整体替换映射，追加新行只向映射新增（此时是ConcurrentHashMap，见HistogramService.appendRows）
+     */
+    public Histogram copy() {
+        Histogram copy = new Histogram();
+        copy.columnName = columnName;
+        copy.actualBinCount = actualBinCount;
+        copy.totalRecords = totalRecords;
+        copy.valueFrequency = new LinkedHashMap<>(valueFrequency);
+        copy.orderedValues = new ArrayList<>(orderedValues);
+        binRows.forEach((bin, rows) -> copy.binRows.put(bin, rows.snapshot()));
+        copy.originalValues = originalValues;
+        copy.valueToBinMapping = valueToBinMapping;
+        copy.numericValues = numericValues;
+        copy.column = column;
+        copy.columnIndex = columnIndex;
+        return copy;
+    }
+
+    /**
+     * 每个箱的数据点：按箱的行号从列向量按需生成，不保存
+     */
+    public Map<String, List<DataPoint>> getBinDetails() {
+        Map<String, List<DataPoint>> binDetails = new LinkedHashMap<>();
+        binRows.forEach((bin, rows) -> binDetails.put(bin, rows.toDataPoints(column, columnIndex)));
+        return binDetails;
+    }
+
+    /**
+     * 设置生成数据点时读取的列
+     */
+    public void setColumn(ColumnVector column, int columnIndex) {
+        this.column = column;
+        this.columnIndex = columnIndex;
+    }
+
     // Getters and Setters
     public String getColumnName() { return columnName; }
     public void setColumnName(String columnName) { this.columnName = columnName; }
@@ -37,10 +78,14 @@ public class Histogram {
     public void setOrderedValues(List<String> orderedValues) { this.orderedValues = orderedValues; }
     public Map<String, Integer> getValueFrequency() { return valueFrequency; }
     public void setValueFrequency(Map<String, Integer> valueFrequency) { this.valueFrequency = valueFrequency; }
-    public Map<String, List<DataPoint>> getBinDetails() { return binDetails; }
-    public void setBinDetails(Map<String, List<DataPoint>> binDetails) { this.binDetails = binDetails; }
+    public Map<String, RowIndexList> getBinRows() { return binRows; }
+    public void setBinRows(Map<String, RowIndexList> binRows) { this.binRows = binRows; }
     public List<String> getOriginalValues() { return originalValues; }
     public void setOriginalValues(List<String> originalValues) { this.originalValues = originalValues; }
     public Map<String, String> getValueToBinMapping() { return valueToBinMapping; }
     public void setValueToBinMapping(Map<String, String> valueToBinMapping) { this.valueToBinMapping = valueToBinMapping; }
+    public NumericColumn getNumericValues() { return numericValues; }
+    public void setNumericValues(NumericColumn numericValues) { this.numericValues = numericValues; }
+    public ColumnVector getColumn() { return column; }
+    public int getColumnIndex() { return columnIndex; }
 }
@@ -0,0 +1,154 @@
+package com.example.rulerDesktop.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 空值标记集合：表示空值的字符串（如"null"、"N/A"、"\N"），不区分大小写
+ * 编译为前缀树，直接在字符序列上匹配，忽略首尾空白，不生成小写副本，不分配对象。
+ * 创建后不可修改，可在多个线程间共享
+ */
+public final class NullTokenSet {
+
+    /**
+     * 默认的空值标记
+     */
+    public static final NullTokenSet DEFAULT = new NullTokenSet(Arrays.asList(
+            "null", "n/a", "na", "none", "undefined", "-", "nan", "inf", "infinity"));
+
+    private final List<String> tokens;
+    private final int maxLength;
+
+    // 前缀树：每个节点的子节点按字符（小写）排序，labels[node][i]对应children[node][i]
+    private final char[][] labels;
+    private final int[][] children;
+    private final boolean[] terminal;
+
+    /**
+     * @param tokens 空值标记，忽略首尾空白、空字符串和大小写不同的重复项
+     */
+    public NullTokenSet(Iterable<String> tokens) {
+        Set<String> keys = new LinkedHashSet<>();
+        List<String> accepted = new ArrayList<>();
+        for (String token : tokens) {
+            String trimmed = token == null ? "" : token.trim();
+            if (!trimmed.isEmpty() && keys.add(fold(trimmed))) {
+                accepted.add(trimmed);
+            }
+        }
+        this.tokens = Collections.unmodifiableList(accepted);
+
+        // 先用可变的节点构建，再压缩为数组
+        List<StringBuilder> nodeLabels = new ArrayList<>();
+        List<List<Integer>> nodeChildren = new ArrayList<>();
+        List<Boolean> nodeTerminal = new ArrayList<>();
+        nodeLabels.add(new StringBuilder());
+        nodeChildren.add(new ArrayList<>());
+        nodeTerminal.add(false);
+
+        int longest = 0;
+        for (String key : keys) {
+            longest = Math.max(longest, key.length());
+            int node = 0;
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(i);
+                int index = nodeLabels.get(node).indexOf(String.valueOf(c));
+                if (index < 0) {
+                    nodeLabels.get(node).append(c);
+                    nodeChildren.get(node).add(nodeLabels.size());
+                    nodeLabels.add(new StringBuilder());
+                    nodeChildren.add(new ArrayList<>());
+                    nodeTerminal.add(false);
+                    index = nodeLabels.get(node).length() - 1;
+                }
+                node = nodeChildren.get(node).get(index);
+            }
+            nodeTerminal.set(node, true);
+        }
+        this.maxLength = longest;
+
+        int nodeCount = nodeLabels.size();
+        labels = new char[nodeCount][];
+        children = new int[nodeCount][];
+        terminal = new boolean[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            char[] nodeChars = nodeLabels.get(node).toString().toCharArray();
+            Integer[] order = new Integer[nodeChars.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Character.compare(nodeChars[a], nodeChars[b]));
+
+            labels[node] = new char[nodeChars.length];
+            children[node] = new int[nodeChars.length];
+            for (int i = 0; i < order.length; i++) {
+                labels[node][i] = nodeChars[order[i]];
+                children[node][i] = nodeChildren.get(node).get(order[i]);
+            }
+            terminal[node] = nodeTerminal.get(node);
+        }
+    }
+
+    /**
+     * 由逗号分隔的文本创建（用于用户输入），空文本表示没有空值标记
+     */
+    public static NullTokenSet parse(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return new NullTokenSet(Collections.emptyList());
+        }
+        return new NullTokenSet(Arrays.asList(text.split(",")));
+    }
+
+    /**
+     * 值（忽略首尾空白和大小写）是否为空值标记
+     */
+    public boolean matches(CharSequence value) {
+        if (value == null) {
+            return false;
+        }
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end || end - start > maxLength) {
+            return false;
+        }
+
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            char[] nodeLabels = labels[node];
+            int index = Arrays.binarySearch(nodeLabels, Character.toLowerCase(value.charAt(i)));
+            if (index < 0) {
+                return false;
+            }
+            node = children[node][index];
+        }
+        return terminal[node];
+    }
+
+    /**
+     * 空值标记（保留输入时的大小写）
+     */
+    public List<String> getTokens() { return tokens; }
+
+    @Override
+    public String toString() {
+        return String.join(", ", tokens);
+    }
+
+    private static String fold(String token) {
+        char[] chars = token.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+}
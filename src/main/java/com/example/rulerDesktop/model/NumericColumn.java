@@ -0,0 +1,83 @@
+package com.example.rulerDesktop.model;
+
+/**
+ * 数值列：加载时把数值列一次性解码为double数组，分箱、统计和排序直接读取，不再重复解析字符串
+ * 空值位图中置位的行没有数值（空值、空字符串或非数值文本），对应的double值无意义；
+ * 堆外列的数值保存在OffHeapArray中；
+ * 分箱时算出的不同值排序结果（见DistinctOrder）也缓存在这里，各种分箱策略和分箱数量都复用同一份
+ */
+public class NumericColumn {
+
+    private final double[] values;
+    private final OffHeapArray offHeapValues;
+    private final int size;
+    private final long[] nullBits;
+    // 标准化后不是<NULL>/<EMPTY>的行数
+    private final int nonEmptyCount;
+    // 其中是数值的行数
+    private final int numericCount;
+    // 不同值的排序结果，未计算时为null
+    private volatile DistinctOrder distinctOrder;
+
+    public NumericColumn(double[] values, long[] nullBits, int nonEmptyCount, int numericCount) {
+        this.values = values;
+        this.offHeapValues = null;
+        this.size = values.length;
+        this.nullBits = nullBits;
+        this.nonEmptyCount = nonEmptyCount;
+        this.numericCount = numericCount;
+    }
+
+    public NumericColumn(OffHeapArray values, int size, long[] nullBits, int nonEmptyCount, int numericCount) {
+        this.values = null;
+        this.offHeapValues = values;
+        this.size = size;
+        this.nullBits = nullBits;
+        this.nonEmptyCount = nonEmptyCount;
+        this.numericCount = numericCount;
+    }
+
+    /**
+     * 指定行是否没有数值
+     */
+    public boolean isNull(int rowIndex) {
+        return (nullBits[rowIndex >>> 6] & (1L << rowIndex)) != 0;
+    }
+
+    /**
+     * 指定行的数值（isNull为true时无意义）
+     */
+    public double get(int rowIndex) {
+        return values != null ? values[rowIndex] : offHeapValues.getDouble(rowIndex);
+    }
+
+    public int size() { return size; }
+    public int getNonEmptyCount() { return nonEmptyCount; }
+    public int getNumericCount() { return numericCount; }
+    public DistinctOrder getDistinctOrder() { return distinctOrder; }
+    public void setDistinctOrder(DistinctOrder distinctOrder) { this.distinctOrder = distinctOrder; }
+
+    /**
+     * 有效值（标准化后不是<NULL>/<EMPTY>）中的不同值按排序键升序排列的结果，
+     * 排序键相同的按第一次出现的先后排列；与计算时使用的标准化值一一对应，列内容不变时一直有效
+     */
+    public static class DistinctOrder {
+        // 每个不同值第一次出现的行号，按排序顺序排列
+        private final int[] firstRows;
+        // 每个不同值出现的次数，与firstRows对应
+        private final int[] counts;
+        // 是否所有不同值都能解析为数字（此时顺序就是数值顺序）
+        private final boolean numericOrder;
+
+        public DistinctOrder(int[] firstRows, int[] counts, boolean numericOrder) {
+            this.firstRows = firstRows;
+            this.counts = counts;
+            this.numericOrder = numericOrder;
+        }
+
+        public int size() { return firstRows.length; }
+        public int getFirstRow(int index) { return firstRows[index]; }
+        public int getCount(int index) { return counts[index]; }
+        public boolean isNumericOrder() { return numericOrder; }
+    }
+}
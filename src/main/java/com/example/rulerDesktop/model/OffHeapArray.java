@@ -0,0 +1,76 @@
+package com.example.rulerDesktop.model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 堆外定长元素数组（int、long或double）
+ * 按固定大小的段分配在OffHeapStorage中，第一次写入某段时才分配；按下标读写，长度由调用方维护
+ */
+public class OffHeapArray {
+
+    // 每段的元素数量
+    private static final int SEGMENT_SHIFT = 20;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    private final OffHeapStorage storage;
+    private final int elementShift;
+    private ByteBuffer[] segments = new ByteBuffer[4];
+
+    /**
+     * @param elementBytes 元素字节数（4或8）
+     */
+    public OffHeapArray(OffHeapStorage storage, int elementBytes) {
+        if (elementBytes != 4 && elementBytes != 8) {
+            throw new IllegalArgumentException("元素字节数必须是4或8: " + elementBytes);
+        }
+        this.storage = storage;
+        this.elementShift = elementBytes == 4 ? 2 : 3;
+    }
+
+    public int getInt(int index) {
+        return segments[index >>> SEGMENT_SHIFT].getInt((index & SEGMENT_MASK) << 2);
+    }
+
+    public void putInt(int index, int value) {
+        segmentFor(index).putInt((index & SEGMENT_MASK) << 2, value);
+    }
+
+    public long getLong(int index) {
+        return segments[index >>> SEGMENT_SHIFT].getLong((index & SEGMENT_MASK) << 3);
+    }
+
+    public void putLong(int index, long value) {
+        segmentFor(index).putLong((index & SEGMENT_MASK) << 3, value);
+    }
+
+    public double getDouble(int index) {
+        return segments[index >>> SEGMENT_SHIFT].getDouble((index & SEGMENT_MASK) << 3);
+    }
+
+    public void putDouble(int index, double value) {
+        segmentFor(index).putDouble((index & SEGMENT_MASK) << 3, value);
+    }
+
+    /**
+     * 共享已分配段的只读视图（之后对原数组更大下标的写入不影响视图中已有的元素）
+     */
+    public OffHeapArray view() {
+        OffHeapArray view = new OffHeapArray(storage, 1 << elementShift);
+        view.segments = segments.clone();
+        return view;
+    }
+
+    public OffHeapStorage getStorage() { return storage; }
+
+    private ByteBuffer segmentFor(int index) {
+        int segment = index >>> SEGMENT_SHIFT;
+        if (segment >= segments.length) {
+            segments = Arrays.copyOf(segments, Math.max(segment + 1, segments.length * 2));
+        }
+        if (segments[segment] == null) {
+            segments[segment] = storage.allocate((1 << SEGMENT_SHIFT) << elementShift);
+        }
+        return segments[segment];
+    }
+}
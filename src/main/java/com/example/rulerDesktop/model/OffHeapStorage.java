@@ -0,0 +1,60 @@
+package com.example.rulerDesktop.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 堆外列存储：列数据按区域映射到一个临时文件（内存映射），不占用Java堆，
+ * 由操作系统页缓存按需换入换出，数据量可以超过堆大小甚至物理内存。
+ * 临时文件以DELETE_ON_CLOSE打开，关闭或进程退出时删除；已映射的区域在不再被引用后由GC释放
+ */
+public class OffHeapStorage implements Closeable {
+
+    private final FileChannel channel;
+    private long length = 0;
+
+    private OffHeapStorage(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 在系统临时目录中创建存储文件
+     */
+    public static OffHeapStorage create() throws IOException {
+        File file = File.createTempFile("ruler-columns", ".tmp");
+        return new OffHeapStorage(FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE));
+    }
+
+    /**
+     * 在文件末尾映射一块新的区域（本机字节序）
+     * 文件按需扩展，未写入的部分不占用磁盘
+     */
+    public synchronized ByteBuffer allocate(int bytes) {
+        try {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, length, bytes);
+            length += bytes;
+            return buffer.order(ByteOrder.nativeOrder());
+        } catch (IOException e) {
+            throw new UncheckedIOException("分配堆外存储失败", e);
+        }
+    }
+
+    /**
+     * 已分配的字节数
+     */
+    public synchronized long getAllocatedBytes() {
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.rulerDesktop.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 堆外字符串数组（只支持追加）
+ * 字符串以UTF-8编码写入数据区域（长度 + 字节），每个元素保存一个long位置（区域序号 << 32 | 区域内偏移）；
+ * 读取时重新解码，不在堆上保留字符串
+ */
+public class OffHeapStringArray {
+
+    // 数据区域的大小，超过该大小的字符串单独分配区域
+    private static final int REGION_SIZE = 4 * 1024 * 1024;
+
+    private final OffHeapStorage storage;
+    private final OffHeapArray positions;
+    private final List<ByteBuffer> regions;
+    private ByteBuffer currentRegion;
+    private int size;
+
+    public OffHeapStringArray(OffHeapStorage storage) {
+        this(storage, new OffHeapArray(storage, Long.BYTES), new ArrayList<>(), 0);
+    }
+
+    private OffHeapStringArray(OffHeapStorage storage, OffHeapArray positions, List<ByteBuffer> regions, int size) {
+        this.storage = storage;
+        this.positions = positions;
+        this.regions = regions;
+        this.size = size;
+    }
+
+    /**
+     * 共享已写入数据的只读视图
+     */
+    public OffHeapStringArray view() {
+        return new OffHeapStringArray(storage, positions.view(), new ArrayList<>(regions), size);
+    }
+
+    public void add(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int recordLength = Integer.BYTES + bytes.length;
+        if (currentRegion == null || currentRegion.remaining() < recordLength) {
+            currentRegion = storage.allocate(Math.max(REGION_SIZE, recordLength));
+            regions.add(currentRegion);
+        }
+
+        int offset = currentRegion.position();
+        currentRegion.putInt(bytes.length).put(bytes);
+        positions.putLong(size++, ((long) (regions.size() - 1) << 32) | offset);
+    }
+
+    public String get(int index) {
+        long position = positions.getLong(index);
+        ByteBuffer region = regions.get((int) (position >>> 32));
+        int offset = (int) position;
+        byte[] bytes = new byte[region.getInt(offset)];
+        region.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int size() { return size; }
+}
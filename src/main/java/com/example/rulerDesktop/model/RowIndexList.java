@@ -0,0 +1,96 @@
+package com.example.rulerDesktop.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 行号列表：分箱结果中一个箱包含的行，按追加顺序保存为int数组，代替每行一个DataPoint对象；
+ * 需要数据点时由toDataPoints()按需生成。
+ * 只追加：snapshot()得到共享数组、长度固定的副本，原列表之后的追加写在副本长度之外，不影响副本；
+ * 向副本追加时先复制数组
+ */
+public class RowIndexList {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] rows;
+    private int size;
+    // 数组是否与另一个列表共享（snapshot()的结果），共享时追加前先复制
+    private boolean shared;
+
+    public RowIndexList() {
+        this.rows = new int[INITIAL_CAPACITY];
+    }
+
+    private RowIndexList(int[] rows, int size) {
+        this.rows = rows;
+        this.size = size;
+        this.shared = true;
+    }
+
+    public void add(int rowIndex) {
+        if (shared || size == rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(INITIAL_CAPACITY, shared ? size + INITIAL_CAPACITY : size * 2));
+            shared = false;
+        }
+        rows[size++] = rowIndex;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("下标越界: " + index);
+        }
+        return rows[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 当前内容的副本，与原列表共享数组，不复制
+     */
+    public RowIndexList snapshot() {
+        return new RowIndexList(rows, size);
+    }
+
+    /**
+     * 数据点视图：读取时才从列向量取值生成DataPoint，不保存
+     *
+     * @param column 行号所属的列
+     * @param columnIndex 数据点的列号
+     */
+    public List<DataPoint> toDataPoints(ColumnVector column, int columnIndex) {
+        return new DataPointList(rows, size, column, columnIndex);
+    }
+
+    private static class DataPointList extends AbstractList<DataPoint> implements RandomAccess {
+        private final int[] rows;
+        private final int size;
+        private final ColumnVector column;
+        private final int columnIndex;
+
+        DataPointList(int[] rows, int size, ColumnVector column, int columnIndex) {
+            this.rows = rows;
+            this.size = size;
+            this.column = column;
+            this.columnIndex = columnIndex;
+        }
+
+        @Override
+        public DataPoint get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("下标越界: " + index);
+            }
+            int rowIndex = rows[index];
+            return new DataPoint(column.get(rowIndex), rowIndex, columnIndex);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
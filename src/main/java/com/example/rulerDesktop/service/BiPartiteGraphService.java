@@ -1,5 +1,6 @@
 package com.example.rulerDesktop.service;
 
+import com.example.rulerDesktop.model.ColumnVector;
 import com.example.rulerDesktop.model.CsvData;
 import com.example.rulerDesktop.model.BiPartiteGraph;
 import com.example.rulerDesktop.model.Histogram;
@@ -49,9 +50,9 @@ public class BiPartiteGraphService {
         BiPartiteGraph biPartiteGraph = new BiPartiteGraph();
         biPartiteGraph.setLeftColumnName(leftColumnName);
         biPartiteGraph.setRightColumnName(rightColumnName);
-        biPartiteGraph.setTotalConnections(csvData.getRows().size());
+        biPartiteGraph.setTotalConnections(csvData.getRowCount());
 
-        if (csvData.getRows().isEmpty()) {
+        if (csvData.getRowCount() == 0) {
             return biPartiteGraph;
         }
 
@@ -290,12 +291,13 @@ public class BiPartiteGraphService {
         Map<String, Integer> connectionCounts = new HashMap<>();
         Map<String, List<BiPartiteGraph.ConnectionDetail>> connectionDetails = new LinkedHashMap<>();
 
-        // 遍历每一行数据，建立连接
-        for (int rowIndex = 0; rowIndex < csvData.getRows().size(); rowIndex++) {
-            Map<String, String> row = csvData.getRows().get(rowIndex);
+        // 按列读取两列数据，遍历每一行建立连接
+        ColumnVector leftColumn = csvData.getColumn(leftColumnName);
+        ColumnVector rightColumn = csvData.getColumn(rightColumnName);
 
-            String leftValue = row.get(leftColumnName);
-            String rightValue = row.get(rightColumnName);
+        for (int rowIndex = 0; rowIndex < csvData.getRowCount(); rowIndex++) {
+            String leftValue = leftColumn.get(rowIndex);
+            String rightValue = rightColumn.get(rowIndex);
 
             // 查找对应的bin标签
             String leftBin = findBinForValue(leftValue, leftValueToBinMapping, leftHistogram);
@@ -314,12 +316,65 @@ public class BiPartiteGraphService {
             }
         }
 
+        biPartiteGraph.setLinks(buildLinks(connectionCounts, biPartiteGraph.getTotalConnections()));
+        biPartiteGraph.setConnectionDetails(connectionDetails);
+    }
+
+    /**
+     * 把追加到CsvData末尾的行计入已有的BiPartiteGraph（跟踪模式）
+     * 两个Histogram应先用HistogramService.appendRows更新；新行只累加连接权重，再重新计算标准化权重
+     * 如果Histogram因为新值重新分箱（appendRows返回了新对象），应改用generateBiPartiteGraphFromHistograms重新生成
+     *
+     * @param fromRow 第一条新行的行号
+     */
+    public BiPartiteGraph appendRows(BiPartiteGraph biPartiteGraph, CsvData csvData,
+                                     Histogram leftHistogram, Histogram rightHistogram, int fromRow) {
+        if (biPartiteGraph == null || csvData == null) {
+            throw new IllegalArgumentException("BiPartiteGraph和CSV数据不能为空");
+        }
+        if (leftHistogram == null || rightHistogram == null) {
+            throw new IllegalArgumentException("Histogram不能为空");
+        }
+
+        Map<String, Integer> connectionCounts = new HashMap<>();
+        for (BiPartiteGraph.BiPartiteLink link : biPartiteGraph.getLinks()) {
+            connectionCounts.put(link.getLeftBin() + "->" + link.getRightBin(), link.getWeight());
+        }
+
+        ColumnVector leftColumn = csvData.getColumn(biPartiteGraph.getLeftColumnName());
+        ColumnVector rightColumn = csvData.getColumn(biPartiteGraph.getRightColumnName());
+
+        for (int rowIndex = fromRow; rowIndex < csvData.getRowCount(); rowIndex++) {
+            String leftValue = leftColumn.get(rowIndex);
+            String rightValue = rightColumn.get(rowIndex);
+
+            String leftBin = findBinForValue(leftValue, leftHistogram.getValueToBinMapping(), leftHistogram);
+            String rightBin = findBinForValue(rightValue, rightHistogram.getValueToBinMapping(), rightHistogram);
+
+            if (leftBin != null && rightBin != null) {
+                String connectionKey = leftBin + "->" + rightBin;
+                connectionCounts.merge(connectionKey, 1, Integer::sum);
+                biPartiteGraph.getConnectionDetails().computeIfAbsent(connectionKey, k -> new ArrayList<>())
+                        .add(new BiPartiteGraph.ConnectionDetail(
+                                rowIndex, leftValue, rightValue, leftBin, rightBin));
+            }
+        }
+
+        biPartiteGraph.setTotalConnections(csvData.getRowCount());
+        biPartiteGraph.setLinks(buildLinks(connectionCounts, biPartiteGraph.getTotalConnections()));
+
+        return biPartiteGraph;
+    }
+
+    /**
+     * 由连接计数构建链接列表，包含标准化权重，按权重从大到小排序
+     */
+    private List<BiPartiteGraph.BiPartiteLink> buildLinks(Map<String, Integer> connectionCounts, int totalConnections) {
         // 找到最大权重，用于标准化
         int maxWeight = connectionCounts.values().stream().mapToInt(Integer::intValue).max().orElse(1);
 
         // 构建链接列表，包含标准化权重
         List<BiPartiteGraph.BiPartiteLink> links = new ArrayList<>();
-        int totalConnections = biPartiteGraph.getTotalConnections();
 
         for (Map.Entry<String, Integer> entry : connectionCounts.entrySet()) {
             String[] parts = entry.getKey().split("->");
@@ -338,8 +393,7 @@ public class BiPartiteGraphService {
         // 按权重排序 - 最强的连接排在前面
         links.sort((a, b) -> Integer.compare(b.getWeight(), a.getWeight()));
 
-        biPartiteGraph.setLinks(links);
-        biPartiteGraph.setConnectionDetails(connectionDetails);
+        return links;
     }
 
     /**
@@ -1,6 +1,8 @@
 package com.example.rulerDesktop.service;
 
-import com.example.rulerDesktop.model.DataPoint;
+import com.example.rulerDesktop.model.ColumnVector;
+import com.example.rulerDesktop.model.NumericColumn;
+import com.example.rulerDesktop.model.RowIndexList;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -13,6 +15,9 @@ import java.util.stream.Collectors;
  * 2. 自动处理空值（NULL/EMPTY）
  * 3. 支持数值型和分类型数据
  * 4. 分箱数量自动调整以不超过实际数据量
+ * 5. 数值直接读取解码好的double数组（NumericColumn），排序、分箱和统计时不再解析字符串
+ * 6. 每个箱只记录包含的行号（RowIndexList），不为每行生成数据点；
+ *    对列分箱时直接读取列向量，字典编码列按编码统计和映射，不生成每行的字符串
  */
 public class BinningService {
 
@@ -41,17 +46,19 @@ public class BinningService {
      * 分箱结果类
      */
     public static class BinningResult {
-        private List<String> binnedValues = new ArrayList<>();
+        // 每行所在的箱在orderedBinLabels中的位置（同名的箱取第一个），没有箱时为-1
+        private int[] binIndexes;
         private Map<String, String> valueToBinMapping = new HashMap<>();
-        private Map<String, List<DataPoint>> binDetails = new LinkedHashMap<>();
+        // 每个箱包含的行号，按箱第一次出现的顺序
+        private Map<String, RowIndexList> binRows = new LinkedHashMap<>();
         private List<String> orderedBinLabels = new ArrayList<>();
         private BinningStrategy usedStrategy;
         private int actualBinCount;
         private Map<String, BinStatistics> binStatistics = new LinkedHashMap<>();
 
-        public List<String> getBinnedValues() { return binnedValues; }
+        public int[] getBinIndexes() { return binIndexes; }
         public Map<String, String> getValueToBinMapping() { return valueToBinMapping; }
-        public Map<String, List<DataPoint>> getBinDetails() { return binDetails; }
+        public Map<String, RowIndexList> getBinRows() { return binRows; }
         public List<String> getOrderedBinLabels() { return orderedBinLabels; }
         public BinningStrategy getUsedStrategy() { return usedStrategy; }
         public int getActualBinCount() { return actualBinCount; }
@@ -97,21 +104,77 @@ public class BinningService {
      * 示例：20个数据，4个空值，16个有效值，请求5箱
      * 结果：4个常规箱（从16个有效值中分出）+ 1个空值箱 = 5箱
      *
-     * @param values 原始值列表
-     * @param dataPoints 数据点列表
+     * @param values 标准化后的值列表，下标即行号
      * @param requestedBinCount 请求的分箱数量（1-50）
      * @param strategy 分箱策略
      * @return 分箱结果
      */
-    public BinningResult performBinning(List<String> values, List<DataPoint> dataPoints,
+    public BinningResult performBinning(List<String> values, int requestedBinCount, BinningStrategy strategy) {
+        return performBinning(values, null, requestedBinCount, strategy);
+    }
+
+    /**
+     * 主分箱方法 - 使用加载时解码好的数值
+     *
+     * @param values 标准化后的值列表，下标即行号
+     * @param numericValues 与values按行对应的数值（见DataNormalizationService.toNumericColumn），
+     *                      为null时从values解码一次
+     * @param requestedBinCount 请求的分箱数量（1-50）
+     * @param strategy 分箱策略
+     * @return 分箱结果
+     */
+    public BinningResult performBinning(List<String> values, NumericColumn numericValues,
                                         int requestedBinCount, BinningStrategy strategy) {
+        if (values != null && !values.isEmpty() && numericValues == null) {
+            numericValues = dataNormalizationService.toNumericColumn(values);
+        }
+        return performBinning(values, null, null, numericValues, requestedBinCount, strategy, null);
+    }
+
+    /**
+     * 对一列的前rowCount行分箱：值从列向量按需标准化读取（见DataNormalizationService.normalizedView），
+     * 不生成每行的字符串列表；字典编码列按编码统计各值的次数，每个编码只查一次所在的箱
+     *
+     * @param numericValues 该列前rowCount行的数值，为null时从列解码（堆外列解码到堆外）
+     */
+    public BinningResult performBinning(ColumnVector column, int rowCount, NumericColumn numericValues,
+                                        int requestedBinCount, BinningStrategy strategy) {
+        return performBinning(column, rowCount, numericValues, requestedBinCount, strategy, null);
+    }
+
+    /**
+     * 对一列的前rowCount行分箱（见上），逐行处理时每隔ImportJob.CANCEL_CHECK_INTERVAL_ROWS行检查一次取消
+     *
+     * @param job 导入任务，为null时不可取消
+     */
+    public BinningResult performBinning(ColumnVector column, int rowCount, NumericColumn numericValues,
+                                        int requestedBinCount, BinningStrategy strategy, ImportJob job) {
+        List<String> values = dataNormalizationService.normalizedView(column, rowCount);
+        String[] normalizedDictionary = column.isDictionaryEncoded()
+                ? dataNormalizationService.getNormalizedDictionary(column)
+                : null;
+        if (rowCount > 0 && numericValues == null) {
+            numericValues = dataNormalizationService.toNumericColumn(column, rowCount);
+        }
+        return performBinning(values, normalizedDictionary != null ? column : null, normalizedDictionary,
+                numericValues, requestedBinCount, strategy, job);
+    }
+
+    /**
+     * @param codedColumn 字典编码的列（values是它的标准化视图），为null时逐行读取values
+     * @param normalizedDictionary codedColumn标准化后的字典
+     * @param job 导入任务，为null时不可取消
+     */
+    private BinningResult performBinning(List<String> values, ColumnVector codedColumn, String[] normalizedDictionary,
+                                         NumericColumn numericValues, int requestedBinCount,
+                                         BinningStrategy strategy, ImportJob job) {
 
         if (values == null || values.isEmpty()) {
             throw new IllegalArgumentException("Values列表不能为空");
         }
 
-        if (dataPoints == null || dataPoints.size() != values.size()) {
-            throw new IllegalArgumentException("DataPoints数量必须与values数量一致");
+        if (numericValues.size() != values.size()) {
+            throw new IllegalArgumentException("数值数量必须与values数量一致");
         }
 
         if (requestedBinCount < MIN_BIN_COUNT || requestedBinCount > MAX_BIN_COUNT) {
@@ -120,32 +183,38 @@ public class BinningService {
         }
 
         BinningResult result = new BinningResult();
+        RowValues rowValues = new RowValues(values, codedColumn, normalizedDictionary);
 
-        // 分离空值和有效值
-        List<String> validValues = new ArrayList<>();
-        List<DataPoint> validDataPoints = new ArrayList<>();
-        List<String> nullValues = new ArrayList<>();
-        List<DataPoint> nullDataPoints = new ArrayList<>();
+        // 分离空值和有效值：有效值只记录行号，空值只记录出现过的种类（按首次出现的顺序）
+        int[] validRows = new int[values.size()];
+        int validCount = 0;
+        Set<String> nullValues = new LinkedHashSet<>();
 
         for (int i = 0; i < values.size(); i++) {
-            String value = values.get(i);
-            if (value.equals("<NULL>") || value.equals("<EMPTY>")) {
-                nullValues.add(value);
-                nullDataPoints.add(dataPoints.get(i));
+            if (job != null && i % ImportJob.CANCEL_CHECK_INTERVAL_ROWS == 0) {
+                job.checkCancelled();
+            }
+            if (rowValues.isNullRow(i)) {
+                nullValues.add(rowValues.get(i));
             } else {
-                validValues.add(value);
-                validDataPoints.add(dataPoints.get(i));
+                validRows[validCount++] = i;
             }
         }
+        NumericValues validNumbers = new NumericValues(values, validRows, validCount, numericValues);
 
         // 如果没有有效值，只返回空值分组
-        if (validValues.isEmpty()) {
-            return handleOnlyNullValues(values, dataPoints, result);
+        if (validCount == 0) {
+            return handleOnlyNullValues(rowValues, nullValues, result, job);
         }
 
-        // 计算有效值的唯一值数量
-        Set<String> uniqueValidValues = new HashSet<>(validValues);
-        int uniqueCount = uniqueValidValues.size();
+        // 检查是否为数值列
+        boolean isNumeric = dataNormalizationService.isNumericColumn(numericValues);
+
+        // 计算有效值的唯一值数量（数值列直接使用缓存的不同值排序结果）
+        Map<String, Long> valueFrequency = isNumeric ? null : rowValues.countValues(validRows, validCount, job);
+        int uniqueCount = isNumeric
+                ? validNumbers.distinctOrder().size()
+                : valueFrequency.size();
 
         // 计算空值组数量（最多1组）
         int nullBinCount = nullValues.isEmpty() ? 0 : 1;
@@ -156,9 +225,6 @@ public class BinningService {
         availableBinsForValidValues = Math.max(1, availableBinsForValidValues); // 至少1箱
         int adjustedBinCount = Math.min(availableBinsForValidValues, uniqueCount);
 
-        // 检查是否为数值列
-        boolean isNumeric = dataNormalizationService.isNumericColumn(validValues);
-
         // 根据策略选择分箱方法
         BinningStrategy actualStrategy = strategy;
         if (strategy == BinningStrategy.AUTO) {
@@ -169,41 +235,115 @@ public class BinningService {
 
         // 执行分箱
         if (isNumeric) {
-            performNumericBinning(validValues, validDataPoints, adjustedBinCount, actualStrategy, result);
+            performNumericBinning(validNumbers, adjustedBinCount, actualStrategy, result);
         } else {
-            performCategoricalBinning(validValues, validDataPoints, adjustedBinCount, actualStrategy, result);
+            performCategoricalBinning(valueFrequency, validCount, adjustedBinCount, actualStrategy, result);
         }
 
         // 添加空值处理
         if (!nullValues.isEmpty()) {
-            addNullValueHandling(nullValues, nullDataPoints, result);
+            addNullValueHandling(nullValues, result);
         }
 
         // 映射所有原始值到分箱值
-        mapAllValuesToBins(values, dataPoints, result);
+        mapAllValuesToBins(rowValues, result, job);
 
         // 计算统计信息
-        calculateBinStatistics(result, values);
+        calculateBinStatistics(result, numericValues, job);
 
         return result;
     }
 
     /**
-     * 处理只有空值的情况
+     * 创建增量分配器：把追加的新值放入已有的箱，不改变现有的箱
+     *
+     * @param valueToBinMapping 分箱结果中的值到箱的映射，新值分配后会加入该映射
+     * @param orderedBinLabels 分箱结果中的箱标签
+     */
+    public BinAssigner createBinAssigner(Map<String, String> valueToBinMapping, List<String> orderedBinLabels) {
+        return new BinAssigner(valueToBinMapping, orderedBinLabels);
+    }
+
+    /**
+     * 增量分配器：已出现过的值直接查映射；空值放入<NULL>箱；
+     * 数值放入范围（按已映射的数值计算）包含它的箱；其他文本放入Other箱。
+     * 找不到合适的箱时返回null，调用方应重新分箱
+     */
+    public class BinAssigner {
+        private final Map<String, String> valueToBinMapping;
+        private final List<String> orderedBinLabels;
+        // 每个箱已映射数值的最小值和最大值，第一次遇到新的数值时计算
+        private Map<String, double[]> binRanges;
+
+        private BinAssigner(Map<String, String> valueToBinMapping, List<String> orderedBinLabels) {
+            this.valueToBinMapping = valueToBinMapping;
+            this.orderedBinLabels = orderedBinLabels;
+        }
+
+        /**
+         * 为标准化后的值查找箱
+         *
+         * @return 箱标签，没有合适的箱时返回null
+         */
+        public String assign(String value) {
+            String binLabel = valueToBinMapping.get(value);
+            if (binLabel != null) {
+                return binLabel;
+            }
+
+            if (value.equals("<NULL>") || value.equals("<EMPTY>")) {
+                binLabel = orderedBinLabels.contains("<NULL>") ? "<NULL>" : null;
+            } else {
+                Double number = dataNormalizationService.parseNumericValue(value);
+                if (number != null) {
+                    binLabel = findRangeBin(number);
+                }
+                if (binLabel == null && orderedBinLabels.contains("Other")) {
+                    binLabel = "Other";
+                }
+            }
+
+            if (binLabel != null) {
+                valueToBinMapping.put(value, binLabel);
+            }
+            return binLabel;
+        }
+
+        private String findRangeBin(double number) {
+            if (binRanges == null) {
+                binRanges = new HashMap<>();
+                for (Map.Entry<String, String> entry : valueToBinMapping.entrySet()) {
+                    Double mapped = dataNormalizationService.parseNumericValue(entry.getKey());
+                    if (mapped != null) {
+                        double[] range = binRanges.computeIfAbsent(entry.getValue(), k -> new double[]{mapped, mapped});
+                        range[0] = Math.min(range[0], mapped);
+                        range[1] = Math.max(range[1], mapped);
+                    }
+                }
+            }
+
+            for (String binLabel : orderedBinLabels) {
+                double[] range = binRanges.get(binLabel);
+                if (range != null && number >= range[0] && number <= range[1]) {
+                    return binLabel;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 处理只有空值的情况：每种空值一个箱，按首次出现的顺序
      */
-    private BinningResult handleOnlyNullValues(List<String> values, List<DataPoint> dataPoints,
-                                               BinningResult result) {
+    private BinningResult handleOnlyNullValues(RowValues rowValues, Set<String> nullValues, BinningResult result,
+                                               ImportJob job) {
         result.usedStrategy = BinningStrategy.EQUAL_FREQUENCY;
 
-        for (int i = 0; i < values.size(); i++) {
-            String value = values.get(i);
-            result.binnedValues.add(value);
+        for (String value : nullValues) {
+            result.orderedBinLabels.add(value);
             result.valueToBinMapping.put(value, value);
-            result.binDetails.computeIfAbsent(value, k -> new ArrayList<>()).add(dataPoints.get(i));
         }
-
-        result.orderedBinLabels = new ArrayList<>(result.binDetails.keySet());
-        result.actualBinCount = result.orderedBinLabels.size();
+        mapAllValuesToBins(rowValues, result, job);
 
         return result;
     }
@@ -211,116 +351,123 @@ public class BinningService {
     /**
      * 数值型数据分箱
      */
-    private void performNumericBinning(List<String> validValues, List<DataPoint> validDataPoints,
+    private void performNumericBinning(NumericValues validNumbers,
                                        int binCount, BinningStrategy strategy, BinningResult result) {
 
         switch (strategy) {
             case EQUAL_FREQUENCY:
-                performEqualFrequencyBinning(validValues, validDataPoints, binCount, result);
+                performEqualFrequencyBinning(validNumbers, binCount, result);
                 break;
             case EQUAL_WIDTH:
-                performEqualWidthBinning(validValues, validDataPoints, binCount, result);
+                performEqualWidthBinning(validNumbers, binCount, result);
                 break;
             case NATURAL_BREAKS:
-                performNaturalBreaksBinning(validValues, validDataPoints, binCount, result);
+                performNaturalBreaksBinning(validNumbers, binCount, result);
                 break;
             case STURGES:
-                int sturgesBins = calculateSturgesBins(validValues.size());
-                sturgesBins = Math.min(sturgesBins, validValues.size());
-                performEqualWidthBinning(validValues, validDataPoints, sturgesBins, result);
+                int sturgesBins = calculateSturgesBins(validNumbers.size());
+                sturgesBins = Math.min(sturgesBins, validNumbers.size());
+                performEqualWidthBinning(validNumbers, sturgesBins, result);
                 break;
             default:
-                performEqualFrequencyBinning(validValues, validDataPoints, binCount, result);
+                performEqualFrequencyBinning(validNumbers, binCount, result);
         }
     }
 
     /**
      * 等频分箱 - 强制精确分箱
+     * 不同值的排序结果缓存在数值列上，重新分箱（任意分箱数量）时不再排序
      */
-    private void performEqualFrequencyBinning(List<String> validValues, List<DataPoint> validDataPoints,
-                                              int binCount, BinningResult result) {
-
-        // 统计频次并排序
-        Map<String, Long> valueFrequency = validValues.stream()
-                .collect(Collectors.groupingBy(v -> v, LinkedHashMap::new, Collectors.counting()));
+    private void performEqualFrequencyBinning(NumericValues validNumbers, int binCount, BinningResult result) {
 
-        List<String> sortedUniqueValues = valueFrequency.keySet().stream()
-                .sorted(dataNormalizationService::compareNumericValues)
-                .collect(Collectors.toList());
-
-        int uniqueCount = sortedUniqueValues.size();
+        NumericColumn.DistinctOrder order = validNumbers.distinctOrder();
+        int uniqueCount = order.size();
 
         // 如果唯一值数量等于分箱数，直接使用原值
         if (uniqueCount == binCount) {
-            for (String value : sortedUniqueValues) {
+            for (int k = 0; k < uniqueCount; k++) {
+                String value = validNumbers.getRowValue(order.getFirstRow(k));
                 result.valueToBinMapping.put(value, value);
+                result.orderedBinLabels.add(value);
             }
-            result.orderedBinLabels = new ArrayList<>(sortedUniqueValues);
-        } else {
-            // 强制分成指定数量的箱
-            List<List<String>> bins = createExactBins(sortedUniqueValues, valueFrequency, binCount);
+            return;
+        }
+
+        // 强制分成指定数量的箱：每个箱至少包含baseSize个唯一值，前remainder个箱多分配一个
+        int baseSize = uniqueCount / binCount;
+        int remainder = uniqueCount % binCount;
+
+        int start = 0;
+        for (int i = 0; i < binCount && start < uniqueCount; i++) {
+            int end = start + baseSize + (i < remainder ? 1 : 0);
 
             // 为每个箱创建标签
-            for (List<String> bin : bins) {
-                String binLabel = dataNormalizationService.createNumericRangeLabel(bin);
-                result.orderedBinLabels.add(binLabel);
-                for (String value : bin) {
-                    result.valueToBinMapping.put(value, binLabel);
-                }
+            String binLabel = createRangeLabel(validNumbers, order, start, end);
+            result.orderedBinLabels.add(binLabel);
+            for (int k = start; k < end; k++) {
+                result.valueToBinMapping.put(validNumbers.getRowValue(order.getFirstRow(k)), binLabel);
             }
+            start = end;
         }
     }
 
     /**
-     * 创建精确数量的bins
+     * 排序后第start到end-1个不同值组成的箱的区间标签（规则与DataNormalizationService.createNumericRangeLabel一致）
      */
-    private List<List<String>> createExactBins(List<String> sortedValues,
-                                               Map<String, Long> valueFrequency, int binCount) {
-        List<List<String>> bins = new ArrayList<>();
-        int uniqueCount = sortedValues.size();
-
-        // 基础分配：每个bin至少包含baseSize个唯一值
-        int baseSize = uniqueCount / binCount;
-        int remainder = uniqueCount % binCount;
-
-        int currentIndex = 0;
-        for (int i = 0; i < binCount; i++) {
-            List<String> bin = new ArrayList<>();
-            // 前remainder个bin多分配一个值
-            int binSize = baseSize + (i < remainder ? 1 : 0);
+    private String createRangeLabel(NumericValues validNumbers, NumericColumn.DistinctOrder order, int start, int end) {
+        String first = validNumbers.getRowValue(order.getFirstRow(start));
+        if (end - start == 1) {
+            return first;
+        }
 
-            for (int j = 0; j < binSize && currentIndex < uniqueCount; j++) {
-                bin.add(sortedValues.get(currentIndex));
-                currentIndex++;
+        double min = 0;
+        double max = 0;
+        boolean hasNumber = false;
+        for (int k = start; k < end; k++) {
+            int row = order.getFirstRow(k);
+            if (!validNumbers.isNumericRow(row)) {
+                continue;
             }
-
-            if (!bin.isEmpty()) {
-                bins.add(bin);
+            double number = validNumbers.getRowNumber(row);
+            if (!hasNumber || Double.compare(number, min) < 0) {
+                min = number;
+            }
+            if (!hasNumber || Double.compare(number, max) > 0) {
+                max = number;
             }
+            hasNumber = true;
         }
 
-        return bins;
+        if (!hasNumber) {
+            return first;
+        }
+        return dataNormalizationService.formatInterval(min, max, DataNormalizationService.IntervalType.RIGHT_OPEN);
     }
 
     /**
      * 等宽分箱
      */
-    private void performEqualWidthBinning(List<String> validValues, List<DataPoint> validDataPoints,
-                                          int binCount, BinningResult result) {
+    private void performEqualWidthBinning(NumericValues validNumbers, int binCount, BinningResult result) {
 
-        List<Double> numericValues = validValues.stream()
-                .map(Double::parseDouble)
-                .collect(Collectors.toList());
+        double[] numericValues = validNumbers.toArray();
 
-        double min = numericValues.stream().min(Double::compare).orElse(0.0);
-        double max = numericValues.stream().max(Double::compare).orElse(0.0);
+        double min = 0.0;
+        double max = 0.0;
+        for (int i = 0; i < numericValues.length; i++) {
+            if (i == 0 || Double.compare(numericValues[i], min) < 0) {
+                min = numericValues[i];
+            }
+            if (i == 0 || Double.compare(numericValues[i], max) > 0) {
+                max = numericValues[i];
+            }
+        }
 
         if (min == max) {
             // 所有值相同
-            String binLabel = formatNumber(min);
+            String binLabel = LabelFormatter.formatTwoDecimals(min);
             result.orderedBinLabels.add(binLabel);
-            for (String value : validValues) {
-                result.valueToBinMapping.put(value, binLabel);
+            for (int i = 0; i < validNumbers.size(); i++) {
+                result.valueToBinMapping.put(validNumbers.getValue(i), binLabel);
             }
             return;
         }
@@ -331,65 +478,58 @@ public class BinningService {
         for (int i = 0; i < binCount; i++) {
             double binMin = min + i * width;
             double binMax = min + (i + 1) * width;
-            String binLabel = formatRange(binMin, binMax);
+            String binLabel = LabelFormatter.formatTwoDecimalRange(binMin, binMax);
             result.orderedBinLabels.add(binLabel);
         }
 
         // 映射值到bins
-        for (String value : validValues) {
-            double numValue = Double.parseDouble(value);
-            int binIndex = (int) ((numValue - min) / width);
+        for (int i = 0; i < numericValues.length; i++) {
+            int binIndex = (int) ((numericValues[i] - min) / width);
             if (binIndex >= binCount) binIndex = binCount - 1;
 
             String binLabel = result.orderedBinLabels.get(binIndex);
-            result.valueToBinMapping.put(value, binLabel);
+            result.valueToBinMapping.put(validNumbers.getValue(i), binLabel);
         }
     }
 
     /**
      * 自然断点分箱
      */
-    private void performNaturalBreaksBinning(List<String> validValues, List<DataPoint> validDataPoints,
-                                             int binCount, BinningResult result) {
+    private void performNaturalBreaksBinning(NumericValues validNumbers, int binCount, BinningResult result) {
 
-        List<Double> sortedNumericValues = validValues.stream()
-                .map(Double::parseDouble)
-                .sorted()
-                .collect(Collectors.toList());
+        double[] numericValues = validNumbers.toArray();
+        double[] sortedNumericValues = validNumbers.toSortedArray();
 
         // 简化的自然断点算法
         List<Double> breakpoints = findNaturalBreakpoints(sortedNumericValues, binCount);
 
         // 创建bins
-        double prevBreak = sortedNumericValues.get(0);
+        double prevBreak = sortedNumericValues[0];
         for (int i = 0; i < breakpoints.size(); i++) {
             double currentBreak = breakpoints.get(i);
-            String binLabel = formatRange(prevBreak, currentBreak);
+            String binLabel = LabelFormatter.formatTwoDecimalRange(prevBreak, currentBreak);
             result.orderedBinLabels.add(binLabel);
             prevBreak = currentBreak;
         }
 
         // 最后一个bin
-        String lastBinLabel = formatRange(prevBreak, sortedNumericValues.get(sortedNumericValues.size() - 1));
+        String lastBinLabel = LabelFormatter.formatTwoDecimalRange(
+                prevBreak, sortedNumericValues[sortedNumericValues.length - 1]);
         result.orderedBinLabels.add(lastBinLabel);
 
-        // 映射值到bins
-        for (String value : validValues) {
-            double numValue = Double.parseDouble(value);
-            String binLabel = findBinLabelForValue(numValue, breakpoints, sortedNumericValues);
-            result.valueToBinMapping.put(value, binLabel);
+        // 映射值到bins：按箱的位置引用上面生成的标签，不再为每个值格式化
+        for (int i = 0; i < numericValues.length; i++) {
+            int binIndex = findBinIndexForValue(numericValues[i], breakpoints);
+            result.valueToBinMapping.put(validNumbers.getValue(i), result.orderedBinLabels.get(binIndex));
         }
     }
 
     /**
      * 分类型数据分箱
      */
-    private void performCategoricalBinning(List<String> validValues, List<DataPoint> validDataPoints,
+    private void performCategoricalBinning(Map<String, Long> valueFrequency, int validCount,
                                            int binCount, BinningStrategy strategy, BinningResult result) {
 
-        Map<String, Long> valueFrequency = validValues.stream()
-                .collect(Collectors.groupingBy(v -> v, LinkedHashMap::new, Collectors.counting()));
-
         int uniqueCount = valueFrequency.size();
 
         // 如果唯一值数量小于等于分箱数，直接使用原值
@@ -410,7 +550,7 @@ public class BinningService {
                     keptValues = getTopKValues(valueFrequency, binCount - 1);
                     break;
                 case FREQUENCY_THRESHOLD:
-                    keptValues = getFrequentValues(valueFrequency, validValues.size(), binCount - 1);
+                    keptValues = getFrequentValues(valueFrequency, validCount, binCount - 1);
                     break;
                 case ALPHABETICAL:
                     keptValues = getAlphabeticalValues(valueFrequency, binCount - 1);
@@ -436,8 +576,7 @@ public class BinningService {
         }
     }
 
-    private void addNullValueHandling(List<String> nullValues, List<DataPoint> nullDataPoints,
-                                      BinningResult result) {
+    private void addNullValueHandling(Set<String> nullValues, BinningResult result) {
 
         if (nullValues.isEmpty()) {
             return;
@@ -446,64 +585,124 @@ public class BinningService {
         // 强制合并：无论有几种空值类型，都只用一个标签
         String mergedNullLabel = "<NULL>";
 
-        // 获取所有空值的唯一类型
-        Map<String, Long> nullFrequency = nullValues.stream()
-                .collect(Collectors.groupingBy(v -> v, Collectors.counting()));
-
         // 只添加一次到orderedBinLabels
         if (!result.orderedBinLabels.contains(mergedNullLabel)) {
             result.orderedBinLabels.add(mergedNullLabel);
         }
 
         // 所有空值类型都映射到同一个标签
-        for (String nullType : nullFrequency.keySet()) {
+        for (String nullType : nullValues) {
             result.valueToBinMapping.put(nullType, mergedNullLabel);
         }
     }
 
     /**
-     * 映射所有值到bins并填充binDetails
+     * 映射所有值到bins：记录每行所在的箱，并把行号加入箱的行号列表
+     * 字典编码列先为每个编码查一次箱，逐行只读取编码
      */
-    private void mapAllValuesToBins(List<String> values, List<DataPoint> dataPoints,
-                                    BinningResult result) {
+    private void mapAllValuesToBins(RowValues rowValues, BinningResult result, ImportJob job) {
+        Map<String, Integer> labelIndexes = new HashMap<>();
+        for (String binLabel : result.orderedBinLabels) {
+            labelIndexes.putIfAbsent(binLabel, labelIndexes.size());
+        }
+        List<String> labels = new ArrayList<>(labelIndexes.size());
+        for (String binLabel : result.orderedBinLabels) {
+            if (labels.size() == labelIndexes.get(binLabel)) {
+                labels.add(binLabel);
+            }
+        }
 
-        for (int i = 0; i < values.size(); i++) {
-            String originalValue = values.get(i);
-            String binLabel = result.valueToBinMapping.get(originalValue);
+        int[] codeBins = null;
+        if (rowValues.codedColumn != null) {
+            codeBins = new int[rowValues.normalizedDictionary.length];
+            for (int code = 0; code < codeBins.length; code++) {
+                Integer binIndex = labelIndexes.get(result.valueToBinMapping.get(rowValues.normalizedDictionary[code]));
+                codeBins[code] = binIndex != null ? binIndex : -1;
+            }
+        }
+
+        int size = rowValues.values.size();
+        int[] binIndexes = new int[size];
+        RowIndexList[] rowsByBin = new RowIndexList[labels.size()];
+        for (int i = 0; i < size; i++) {
+            if (job != null && i % ImportJob.CANCEL_CHECK_INTERVAL_ROWS == 0) {
+                job.checkCancelled();
+            }
+            int binIndex;
+            if (codeBins != null) {
+                binIndex = codeBins[rowValues.codedColumn.getCode(i)];
+            } else {
+                Integer index = labelIndexes.get(result.valueToBinMapping.get(rowValues.get(i)));
+                binIndex = index != null ? index : -1;
+            }
+            binIndexes[i] = binIndex;
+            if (binIndex < 0) {
+                continue;
+            }
 
-            result.binnedValues.add(binLabel);
-            result.binDetails.computeIfAbsent(binLabel, k -> new ArrayList<>()).add(dataPoints.get(i));
+            RowIndexList rows = rowsByBin[binIndex];
+            if (rows == null) {
+                rows = new RowIndexList();
+                rowsByBin[binIndex] = rows;
+                result.binRows.put(labels.get(binIndex), rows);
+            }
+            rows.add(i);
         }
 
-        result.actualBinCount = result.binDetails.size();
+        result.binIndexes = binIndexes;
+        result.actualBinCount = result.binRows.size();
     }
 
     /**
-     * 计算bin统计信息
+     * 计算bin统计信息：逐行把数值累计到所属的箱，每个箱只保存最小值、最大值和合计
      */
-    private void calculateBinStatistics(BinningResult result, List<String> originalValues) {
-        int totalCount = originalValues.size();
+    private void calculateBinStatistics(BinningResult result, NumericColumn numericValues, ImportJob job) {
+        int[] binIndexes = result.binIndexes;
+        int totalCount = binIndexes.length;
 
-        for (String binLabel : result.orderedBinLabels) {
-            List<DataPoint> binDataPoints = result.binDetails.get(binLabel);
-            if (binDataPoints == null) continue;
+        int binCount = 0;
+        for (int binIndex : binIndexes) {
+            binCount = Math.max(binCount, binIndex + 1);
+        }
+        double[] mins = new double[binCount];
+        double[] maxs = new double[binCount];
+        DoubleSummaryStatistics[] sums = new DoubleSummaryStatistics[binCount];
+        for (int i = 0; i < totalCount; i++) {
+            if (job != null && i % ImportJob.CANCEL_CHECK_INTERVAL_ROWS == 0) {
+                job.checkCancelled();
+            }
+            int binIndex = binIndexes[i];
+            if (binIndex < 0 || numericValues.isNull(i)) {
+                continue;
+            }
+            double number = numericValues.get(i);
+            if (sums[binIndex] == null) {
+                sums[binIndex] = new DoubleSummaryStatistics();
+                mins[binIndex] = number;
+                maxs[binIndex] = number;
+            } else {
+                if (Double.compare(number, mins[binIndex]) < 0) mins[binIndex] = number;
+                if (Double.compare(number, maxs[binIndex]) > 0) maxs[binIndex] = number;
+            }
+            sums[binIndex].accept(number);
+        }
 
-            int count = binDataPoints.size();
-            double percentage = (double) count / totalCount * 100;
+        Map<String, Integer> labelIndexes = new HashMap<>();
+        for (String binLabel : result.orderedBinLabels) {
+            labelIndexes.putIfAbsent(binLabel, labelIndexes.size());
+        }
 
-            List<Double> numericValues = binDataPoints.stream()
-                    .map(DataPoint::getValue)
-                    .filter(dataNormalizationService::isNumericValue)
-                    .map(Double::parseDouble)
-                    .collect(Collectors.toList());
+        for (String binLabel : result.orderedBinLabels) {
+            RowIndexList binRows = result.binRows.get(binLabel);
+            if (binRows == null) continue;
 
-            if (!numericValues.isEmpty()) {
-                double min = numericValues.stream().min(Double::compare).orElse(0.0);
-                double max = numericValues.stream().max(Double::compare).orElse(0.0);
-                double mean = numericValues.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
+            int count = binRows.size();
+            double percentage = (double) count / totalCount * 100;
 
-                result.binStatistics.put(binLabel,
-                        new BinStatistics(min, max, mean, count, percentage));
+            int binIndex = labelIndexes.get(binLabel);
+            if (binIndex < binCount && sums[binIndex] != null) {
+                result.binStatistics.put(binLabel, new BinStatistics(
+                        mins[binIndex], maxs[binIndex], sums[binIndex].getAverage(), count, percentage));
             } else {
                 result.binStatistics.put(binLabel,
                         new BinStatistics(0, 0, 0, count, percentage));
@@ -546,9 +745,9 @@ public class BinningService {
                 .collect(Collectors.toCollection(LinkedHashSet::new));
     }
 
-    private List<Double> findNaturalBreakpoints(List<Double> sortedValues, int binCount) {
+    private List<Double> findNaturalBreakpoints(double[] sortedValues, int binCount) {
         List<Double> breakpoints = new ArrayList<>();
-        int n = sortedValues.size();
+        int n = sortedValues.length;
         int step = n / binCount;
 
         for (int i = 1; i < binCount; i++) {
@@ -559,56 +758,322 @@ public class BinningService {
 
                 for (int j = Math.max(1, index - step/2);
                      j < Math.min(n - 1, index + step/2); j++) {
-                    double gap = sortedValues.get(j) - sortedValues.get(j - 1);
+                    double gap = sortedValues[j] - sortedValues[j - 1];
                     if (gap > maxGap) {
                         maxGap = gap;
                         maxGapIndex = j;
                     }
                 }
 
-                breakpoints.add(sortedValues.get(maxGapIndex));
+                breakpoints.add(sortedValues[maxGapIndex]);
             }
         }
 
         return breakpoints;
     }
 
-    private String findBinLabelForValue(double value, List<Double> breakpoints, List<Double> sortedValues) {
-        double min = sortedValues.get(0);
-        double max = sortedValues.get(sortedValues.size() - 1);
-
-        for (int i = 0; i < breakpoints.size(); i++) {
+    /**
+     * 值所在的箱的位置：第一个大于该值的断点之前的箱，不小于最后一个断点时为最后一个箱
+     * NaN排序时在最后，也放入最后一个箱
+     */
+    private int findBinIndexForValue(double value, List<Double> breakpoints) {
+        int last = breakpoints.size() - 1;
+        if (value >= breakpoints.get(last) || Double.isNaN(value)) {
+            return breakpoints.size();
+        }
+        for (int i = 0; i < last; i++) {
             if (value < breakpoints.get(i)) {
-                max = breakpoints.get(i);
-                min = (i == 0) ? sortedValues.get(0) : breakpoints.get(i - 1);
-                break;
+                return i;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * 有效值及其数值：数值行直接读取解码结果，只有少数非数值文本才解析字符串
+     */
+    private static class NumericValues {
+        // 所有行的标准化值
+        private final List<String> rowValues;
+        // 有效值的行号，前count个有效
+        private final int[] rows;
+        private final int count;
+        private final NumericColumn numericColumn;
+
+        NumericValues(List<String> rowValues, int[] rows, int count, NumericColumn numericColumn) {
+            this.rowValues = rowValues;
+            this.rows = rows;
+            this.count = count;
+            this.numericColumn = numericColumn;
+        }
+
+        int size() { return count; }
+        String getValue(int index) { return rowValues.get(rows[index]); }
+        String getRowValue(int row) { return rowValues.get(row); }
+
+        /**
+         * 指定行是否为isNumericValue认可的数值（参与区间标签的计算）
+         */
+        boolean isNumericRow(int row) {
+            return !numericColumn.isNull(row);
+        }
+
+        /**
+         * 指定行的数值；不是数值时按Double.parseDouble解析（解析失败时抛出异常）
+         */
+        double getRowNumber(int row) {
+            return numericColumn.isNull(row) ? Double.parseDouble(rowValues.get(row)) : numericColumn.get(row);
+        }
+
+        /**
+         * 第index个有效值的数值；不是数值时按Double.parseDouble解析（解析失败时抛出异常）
+         */
+        double getNumber(int index) {
+            return getRowNumber(rows[index]);
+        }
+
+        double[] toArray() {
+            double[] numbers = new double[count];
+            for (int i = 0; i < numbers.length; i++) {
+                numbers[i] = getNumber(i);
+            }
+            return numbers;
+        }
+
+        /**
+         * 所有有效值的数值升序排列（与对toArray()的结果排序相同），由不同值的排序结果按出现次数展开
+         */
+        double[] toSortedArray() {
+            NumericColumn.DistinctOrder order = distinctOrder();
+            if (!order.isNumericOrder()) {
+                double[] numbers = toArray();
+                Arrays.sort(numbers);
+                return numbers;
+            }
+
+            double[] numbers = new double[count];
+            int position = 0;
+            for (int k = 0; k < order.size(); k++) {
+                double number = getRowNumber(order.getFirstRow(k));
+                int count = order.getCount(k);
+                Arrays.fill(numbers, position, position + count, number);
+                position += count;
+            }
+            return numbers;
+        }
+
+        /**
+         * 不同值的排序结果：数值列上已有时直接使用，否则计算一次并缓存在数值列上
+         */
+        NumericColumn.DistinctOrder distinctOrder() {
+            NumericColumn.DistinctOrder order = numericColumn.getDistinctOrder();
+            if (order == null) {
+                order = computeDistinctOrder();
+                numericColumn.setDistinctOrder(order);
+            }
+            return order;
+        }
+
+        /**
+         * 收集不同值（按首次出现的顺序），每个不同值只取一次排序键，再按排序键排序
+         * 都能解析为数字时把数值转为可按位比较的long，用稳定的基数排序对下标排序；
+         * 否则按SortKey比较（规则与DataNormalizationService.compareNumericValues一致）
+         */
+        private NumericColumn.DistinctOrder computeDistinctOrder() {
+            Map<String, Integer> distinctIndex = new HashMap<>();
+            int[] firstRows = new int[16];
+            int[] counts = new int[16];
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                Integer index = distinctIndex.putIfAbsent(getValue(i), distinct);
+                if (index != null) {
+                    counts[index]++;
+                    continue;
+                }
+                if (distinct == firstRows.length) {
+                    firstRows = Arrays.copyOf(firstRows, distinct * 2);
+                    counts = Arrays.copyOf(counts, distinct * 2);
+                }
+                firstRows[distinct] = rows[i];
+                counts[distinct] = 1;
+                distinct++;
+            }
+
+            long[] keys = new long[distinct];
+            boolean allParsed = true;
+            for (int d = 0; d < distinct && allParsed; d++) {
+                try {
+                    keys[d] = sortableBits(getRowNumber(firstRows[d]));
+                } catch (NumberFormatException e) {
+                    allParsed = false;
+                }
+            }
+
+            int[] order = allParsed ? radixSort(keys) : sortBySortKeys(firstRows, distinct);
+            int[] sortedRows = new int[distinct];
+            int[] sortedCounts = new int[distinct];
+            for (int k = 0; k < distinct; k++) {
+                sortedRows[k] = firstRows[order[k]];
+                sortedCounts[k] = counts[order[k]];
+            }
+            return new NumericColumn.DistinctOrder(sortedRows, sortedCounts, allParsed);
+        }
+
+        private int[] sortBySortKeys(int[] firstRows, int distinct) {
+            List<SortKey> keys = new ArrayList<>(distinct);
+            for (int d = 0; d < distinct; d++) {
+                String value = rowValues.get(firstRows[d]);
+                try {
+                    keys.add(new SortKey(d, value, getRowNumber(firstRows[d]), true));
+                } catch (NumberFormatException e) {
+                    keys.add(new SortKey(d, value, 0, false));
+                }
+            }
+            keys.sort(SortKey::compareTo);
+
+            int[] order = new int[distinct];
+            for (int k = 0; k < distinct; k++) {
+                order[k] = keys.get(k).index;
             }
+            return order;
+        }
+    }
+
+    /**
+     * 按行读取标准化后的值：字典编码列按编码读取标准化后的字典，空值判断和计数每个编码只做一次
+     */
+    private static class RowValues {
+        private final List<String> values;
+        private final ColumnVector codedColumn;
+        private final String[] normalizedDictionary;
+        // 各编码标准化后是否为空值，非字典编码列为null
+        private final boolean[] nullCodes;
+
+        RowValues(List<String> values, ColumnVector codedColumn, String[] normalizedDictionary) {
+            this.values = values;
+            this.codedColumn = codedColumn;
+            this.normalizedDictionary = normalizedDictionary;
+            if (codedColumn != null) {
+                nullCodes = new boolean[normalizedDictionary.length];
+                for (int code = 0; code < nullCodes.length; code++) {
+                    nullCodes[code] = isNullValue(normalizedDictionary[code]);
+                }
+            } else {
+                nullCodes = null;
+            }
+        }
+
+        String get(int row) {
+            return values.get(row);
+        }
+
+        boolean isNullRow(int row) {
+            return nullCodes != null ? nullCodes[codedColumn.getCode(row)] : isNullValue(values.get(row));
         }
 
-        if (value >= breakpoints.get(breakpoints.size() - 1)) {
-            min = breakpoints.get(breakpoints.size() - 1);
-            max = sortedValues.get(sortedValues.size() - 1);
+        /**
+         * 统计有效值各自出现的次数，按首次出现的顺序
+         * 字典编码列先按编码计数（编码按值首次出现的顺序分配），再合并标准化后相同的值
+         */
+        Map<String, Long> countValues(int[] validRows, int validCount, ImportJob job) {
+            Map<String, Long> valueFrequency = new LinkedHashMap<>();
+            if (codedColumn == null) {
+                for (int i = 0; i < validCount; i++) {
+                    if (job != null && i % ImportJob.CANCEL_CHECK_INTERVAL_ROWS == 0) {
+                        job.checkCancelled();
+                    }
+                    valueFrequency.merge(values.get(validRows[i]), 1L, Long::sum);
+                }
+                return valueFrequency;
+            }
+
+            long[] counts = new long[normalizedDictionary.length];
+            for (int i = 0; i < validCount; i++) {
+                if (job != null && i % ImportJob.CANCEL_CHECK_INTERVAL_ROWS == 0) {
+                    job.checkCancelled();
+                }
+                counts[codedColumn.getCode(validRows[i])]++;
+            }
+            for (int code = 0; code < counts.length; code++) {
+                if (counts[code] > 0) {
+                    valueFrequency.merge(normalizedDictionary[code], counts[code], Long::sum);
+                }
+            }
+            return valueFrequency;
         }
 
-        return formatRange(min, max);
+        private static boolean isNullValue(String value) {
+            return value.equals("<NULL>") || value.equals("<EMPTY>");
+        }
     }
 
-    private String formatRange(double min, double max) {
-        String minStr = formatNumber(min);
-        String maxStr = formatNumber(max);
+    /**
+     * 把double转为long，按无符号整数比较的顺序与Double.compare一致（-0.0小于0.0，NaN最大）
+     */
+    private static long sortableBits(double number) {
+        long bits = Double.doubleToLongBits(number);
+        return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+    }
 
-        if (minStr.equals(maxStr)) {
-            return minStr;
+    /**
+     * 按无符号的key对下标做稳定的LSD基数排序（每次8位），返回排序后的下标
+     * 所有key在某一字节上都相同时跳过该轮
+     */
+    private static int[] radixSort(long[] keys) {
+        int n = keys.length;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
         }
+        int[] buffer = new int[n];
+        int[] offsets = new int[257];
 
-        return minStr + "-" + maxStr;
+        for (int shift = 0; shift < Long.SIZE; shift += 8) {
+            Arrays.fill(offsets, 0);
+            for (int i = 0; i < n; i++) {
+                offsets[(int) ((keys[i] >>> shift) & 0xFF) + 1]++;
+            }
+            if (n == 0 || offsets[(int) ((keys[0] >>> shift) & 0xFF) + 1] == n) {
+                continue;
+            }
+            for (int b = 0; b < 256; b++) {
+                offsets[b + 1] += offsets[b];
+            }
+            for (int i = 0; i < n; i++) {
+                int index = order[i];
+                buffer[offsets[(int) ((keys[index] >>> shift) & 0xFF)]++] = index;
+            }
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+        return order;
     }
 
-    private String formatNumber(double number) {
-        if (number == Math.floor(number) && !Double.isInfinite(number)) {
-            return String.valueOf((long) number);
-        } else {
-            return String.format("%.2f", number).replaceAll("0*$", "").replaceAll("\\.$", "");
+    /**
+     * 不同值的排序键（有不能解析为数字的值时使用），比较规则与DataNormalizationService.compareNumericValues一致：
+     * 两边都能解析为数字时按数值比较，否则按字符串比较
+     */
+    private static class SortKey implements Comparable<SortKey> {
+        // 不同值按首次出现顺序的下标
+        private final int index;
+        private final String value;
+        private final double number;
+        private final boolean parsed;
+
+        SortKey(int index, String value, double number, boolean parsed) {
+            this.index = index;
+            this.value = value;
+            this.number = number;
+            this.parsed = parsed;
+        }
+
+        @Override
+        public int compareTo(SortKey other) {
+            if (parsed && other.parsed) {
+                return Double.compare(number, other.number);
+            }
+            return value.compareTo(other.value);
         }
     }
-}
\ No newline at end of file
+}
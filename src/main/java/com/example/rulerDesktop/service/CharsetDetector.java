@@ -0,0 +1,92 @@
+package com.example.rulerDesktop.service;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 编码检测服务类
+ * 只检测文件开头的一段样本：按候选编码依次使用严格解码器（CodingErrorAction.REPORT）解码，
+ * 遇到第一个非法字节序列即放弃该编码，不生成完整的字符串
+ */
+public class CharsetDetector {
+
+    // 候选编码，按优先级排列
+    private static final List<Charset> CANDIDATE_CHARSETS = List.of(
+            StandardCharsets.UTF_8,
+            Charset.forName("GBK"),
+            Charset.forName("GB2312"),
+            StandardCharsets.ISO_8859_1
+    );
+
+    private static final int DECODE_BUFFER_SIZE = 4096;
+
+    /**
+     * UTF-8 BOM的长度，没有BOM时返回0
+     */
+    public int utf8BomLength(byte[] sample, int length) {
+        if (length >= 3 &&
+                sample[0] == (byte) 0xEF &&
+                sample[1] == (byte) 0xBB &&
+                sample[2] == (byte) 0xBF) {
+            return 3;
+        }
+        return 0;
+    }
+
+    /**
+     * 检测样本的编码
+     *
+     * @param sample 文件开头的字节
+     * @param length 样本的有效长度
+     * @param complete 样本是否已包含整个文件（否则末尾可能截断多字节字符）
+     * @return 检测到的编码，全部失败时返回UTF-8
+     */
+    public Charset detect(byte[] sample, int length, boolean complete) {
+        for (Charset charset : CANDIDATE_CHARSETS) {
+            if (canDecode(charset, sample, length, complete)) {
+                return charset;
+            }
+        }
+
+        // 默认使用UTF-8
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * 使用严格解码器验证样本，遇到非法序列立即返回false
+     */
+    private boolean canDecode(Charset charset, byte[] sample, int length, boolean complete) {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+        ByteBuffer input = ByteBuffer.wrap(sample, 0, length);
+        CharBuffer output = CharBuffer.allocate(DECODE_BUFFER_SIZE);
+
+        while (true) {
+            CoderResult result = decoder.decode(input, output, complete);
+            if (result.isError()) {
+                return false;
+            }
+            if (result.isOverflow()) {
+                // 只验证，不保留解码结果
+                output.clear();
+                continue;
+            }
+            // 下溢：样本已全部消费；未完整时末尾剩余的字节是被截断的多字节字符，不算错误
+            break;
+        }
+
+        if (complete) {
+            output.clear();
+            return !decoder.flush(output).isError();
+        }
+        return true;
+    }
+}
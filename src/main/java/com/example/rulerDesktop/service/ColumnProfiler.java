@@ -0,0 +1,234 @@
+package com.example.rulerDesktop.service;
+
+import com.example.rulerDesktop.model.ColumnProfile;
+import com.example.rulerDesktop.model.ColumnVector;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 列概况分析服务类
+ * 一次遍历列向量得到类型、非空数、空值数、数值范围、数值精度和不同值数量；
+ * 空白和列的空值标记（见ColumnVector.isNullToken）都算空值：
+ * 字典编码列只统计每个编码的出现次数，每个不同值只分类一次；
+ * 高基数列逐个分类，不同值数量用HyperLogLog估算
+ */
+public class ColumnProfiler {
+
+    // 超过该比例的非空值是数字/日期时，认为是数值型/日期型
+    private static final double TYPE_THRESHOLD = 0.8;
+    private static final int SKETCH_PRECISION = 12;
+
+    // 支持的日期格式，长度都是10
+    private static final int DATE_LENGTH = 10;
+    private static final Pattern[] DATE_PATTERNS = {
+            Pattern.compile("\\d{4}-\\d{2}-\\d{2}"),           // 2023-12-25
+            Pattern.compile("\\d{2}/\\d{2}/\\d{4}"),           // 12/25/2023
+            Pattern.compile("\\d{4}/\\d{2}/\\d{2}"),           // 2023/12/25
+            Pattern.compile("\\d{2}-\\d{2}-\\d{4}"),           // 25-12-2023
+    };
+
+    /**
+     * 分析所有列，按列顺序返回
+     */
+    public Map<String, ColumnProfile> profileAll(List<ColumnVector> columns) {
+        return profileAll(columns, null);
+    }
+
+    /**
+     * 分析所有列，每分析一列通过导入任务报告进度，列内每隔一定行数检查取消
+     *
+     * @param job 导入任务，为null时不报告
+     */
+    public Map<String, ColumnProfile> profileAll(List<ColumnVector> columns, ImportJob job) {
+        Map<String, ColumnProfile> profiles = new LinkedHashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            if (job != null) {
+                job.progress(ImportJob.Stage.PROFILE, i, columns.size());
+            }
+            ColumnVector column = columns.get(i);
+            profiles.put(column.getName(), profile(column, job));
+        }
+        return profiles;
+    }
+
+    /**
+     * 分析一列
+     */
+    public ColumnProfile profile(ColumnVector column) {
+        return profile(column, null);
+    }
+
+    /**
+     * 分析一列，逐行统计时每隔ImportJob.CANCEL_CHECK_INTERVAL_ROWS行检查一次取消
+     *
+     * @param job 导入任务，为null时不可取消
+     */
+    public ColumnProfile profile(ColumnVector column, ImportJob job) {
+        ColumnProfile profile = new ColumnProfile(column.getName());
+
+        if (column.isDictionaryEncoded()) {
+            List<String> dictionary = column.getDictionary();
+            int[] counts = new int[dictionary.size()];
+            for (int rowIndex = 0; rowIndex < column.size(); rowIndex++) {
+                if (job != null && rowIndex % ImportJob.CANCEL_CHECK_INTERVAL_ROWS == 0) {
+                    job.checkCancelled();
+                }
+                counts[column.getCode(rowIndex)]++;
+            }
+
+            int distinct = 0;
+            for (int code = 0; code < counts.length; code++) {
+                if (counts[code] > 0
+                        && accept(profile, dictionary.get(code), counts[code], column.isNullTokenCode(code))) {
+                    distinct++;
+                }
+            }
+            profile.setDistinctCount(distinct);
+            profile.setDistinctCountExact(true);
+        } else {
+            HyperLogLog sketch = new HyperLogLog(SKETCH_PRECISION);
+            for (int rowIndex = 0; rowIndex < column.size(); rowIndex++) {
+                if (job != null && rowIndex % ImportJob.CANCEL_CHECK_INTERVAL_ROWS == 0) {
+                    job.checkCancelled();
+                }
+                String value = column.get(rowIndex);
+                if (accept(profile, value, 1, column.isNullToken(rowIndex))) {
+                    sketch.add(value.trim());
+                }
+            }
+            profile.setDistinctCount(sketch.estimate());
+            profile.setDistinctCountExact(false);
+        }
+
+        profile.setType(detectType(profile));
+        return profile;
+    }
+
+    /**
+     * 累计一个值（出现count次）
+     *
+     * @param nullToken 值是否为空值标记
+     * @return 值是否非空
+     */
+    private boolean accept(ColumnProfile profile, String value, int count, boolean nullToken) {
+        if (value == null || nullToken || value.trim().isEmpty()) {
+            profile.setNullCount(profile.getNullCount() + count);
+            return false;
+        }
+
+        String trimmed = value.trim();
+        profile.setNonEmptyCount(profile.getNonEmptyCount() + count);
+
+        int fractionDigits = scanDecimal(trimmed);
+        if (fractionDigits >= 0 || mayBeNumeric(trimmed)) {
+            try {
+                double number = Double.parseDouble(trimmed);
+                profile.setNumericCount(profile.getNumericCount() + count);
+                if (!Double.isNaN(number)) {
+                    profile.setMin(Double.isNaN(profile.getMin()) ? number : Math.min(profile.getMin(), number));
+                    profile.setMax(Double.isNaN(profile.getMax()) ? number : Math.max(profile.getMax(), number));
+                }
+                profile.setPrecision(Math.max(profile.getPrecision(), fractionDigits));
+            } catch (NumberFormatException e) {
+                // 不是数值
+            }
+        }
+
+        if (isDate(trimmed)) {
+            profile.setDateCount(profile.getDateCount() + count);
+        }
+        return true;
+    }
+
+    private String detectType(ColumnProfile profile) {
+        int total = profile.getNonEmptyCount();
+        if (total == 0) {
+            return ColumnProfile.TYPE_EMPTY;
+        }
+        if (profile.getNumericCount() > total * TYPE_THRESHOLD) {
+            return ColumnProfile.TYPE_NUMERIC;
+        }
+        if (profile.getDateCount() > total * TYPE_THRESHOLD) {
+            return ColumnProfile.TYPE_DATE;
+        }
+        return ColumnProfile.TYPE_TEXT;
+    }
+
+    /**
+     * 扫描普通十进制数（可带符号、小数点和指数）
+     *
+     * @return 小数位数，不是普通十进制数时返回-1
+     */
+    private int scanDecimal(String value) {
+        int length = value.length();
+        int i = 0;
+        if (value.charAt(i) == '-' || value.charAt(i) == '+') {
+            i++;
+        }
+
+        int digits = 0;
+        int fractionDigits = 0;
+        while (i < length && isDigit(value.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < length && value.charAt(i) == '.') {
+            i++;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+                fractionDigits++;
+            }
+        }
+        if (digits + fractionDigits == 0) {
+            return -1;
+        }
+
+        if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return -1;
+            }
+        }
+
+        return i == length ? fractionDigits : -1;
+    }
+
+    /**
+     * 不是普通十进制数时，是否仍可能被Double.parseDouble接受（NaN、Infinity、十六进制、带d/f后缀等）
+     */
+    private boolean mayBeNumeric(String value) {
+        int i = value.charAt(0) == '-' || value.charAt(0) == '+' ? 1 : 0;
+        if (i >= value.length()) {
+            return false;
+        }
+        char c = value.charAt(i);
+        return isDigit(c) || c == '.' || c == 'N' || c == 'I';
+    }
+
+    private boolean isDate(String value) {
+        if (value.length() != DATE_LENGTH) {
+            return false;
+        }
+        for (Pattern pattern : DATE_PATTERNS) {
+            if (pattern.matcher(value).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.rulerDesktop.service;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 压缩格式检测服务类
+ * 根据文件开头的魔数识别gzip和zip，返回边读边解压的输入流，不解压到临时文件
+ */
+public class CompressionDetector {
+
+    public enum Format {
+        NONE,
+        GZIP,
+        ZIP
+    }
+
+    private static final int MAGIC_LENGTH = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // gzip末尾的CRC32和ISIZE（解压后大小对2^32取模，小端）
+    private static final int GZIP_TRAILER_LENGTH = 8;
+
+    /**
+     * 检测文件的压缩格式
+     */
+    public Format detect(File file) throws IOException {
+        try (InputStream input = new FileInputStream(file)) {
+            byte[] magic = input.readNBytes(MAGIC_LENGTH);
+            return detect(magic, magic.length);
+        }
+    }
+
+    /**
+     * 根据开头的字节检测压缩格式
+     */
+    public Format detect(byte[] magic, int length) {
+        if (length >= 2 && magic[0] == (byte) 0x1F && magic[1] == (byte) 0x8B) {
+            return Format.GZIP;
+        }
+        if (length >= 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4) {
+            return Format.ZIP;
+        }
+        return Format.NONE;
+    }
+
+    /**
+     * 列出zip中的CSV条目（忽略目录和__MACOSX元数据）；没有.csv条目时列出所有文件条目
+     */
+    public List<String> listCsvEntries(File zipFile) throws IOException {
+        List<String> csvEntries = new ArrayList<>();
+        List<String> fileEntries = new ArrayList<>();
+
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (isDataEntry(entry)) {
+                    fileEntries.add(entry.getName());
+                    if (entry.getName().toLowerCase().endsWith(".csv")) {
+                        csvEntries.add(entry.getName());
+                    }
+                }
+            }
+        }
+
+        return csvEntries.isEmpty() ? fileEntries : csvEntries;
+    }
+
+    /**
+     * 打开文件，返回解压后的输入流
+     *
+     * @param entryName zip中要读取的条目，为null时读取第一个CSV条目；非zip文件忽略
+     */
+    public InputStream open(File file, String entryName) throws IOException {
+        Format format = detect(file);
+
+        if (format == Format.ZIP) {
+            ZipFile zip = new ZipFile(file);
+            try {
+                if (entryName == null) {
+                    List<String> entries = listCsvEntries(file);
+                    if (entries.isEmpty()) {
+                        throw new IllegalArgumentException("zip文件中没有CSV文件: " + file.getName());
+                    }
+                    entryName = entries.get(0);
+                }
+
+                ZipEntry entry = zip.getEntry(entryName);
+                if (entry == null || entry.isDirectory()) {
+                    throw new IllegalArgumentException("zip文件中不存在条目: " + entryName);
+                }
+
+                // 关闭条目流时一并关闭ZipFile
+                return new FilterInputStream(zip.getInputStream(entry)) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            zip.close();
+                        }
+                    }
+                };
+            } catch (IOException | RuntimeException e) {
+                zip.close();
+                throw e;
+            }
+        }
+
+        InputStream input = new FileInputStream(file);
+        if (format == Format.GZIP) {
+            try {
+                return new GZIPInputStream(input, BUFFER_SIZE);
+            } catch (IOException e) {
+                input.close();
+                throw e;
+            }
+        }
+        return input;
+    }
+
+    /**
+     * 估算解压后的数据大小，用于在读取前决定是否使用堆外存储
+     * gzip读取末尾的ISIZE字段：多成员或超过4GB时会偏小，因此不小于压缩文件本身的大小；
+     * zip使用条目记录的大小；未压缩或大小未知时返回文件大小
+     *
+     * @param entryName zip中要读取的条目，为null时为第一个CSV条目；非zip文件忽略
+     */
+    public long estimateUncompressedSize(File file, String entryName) throws IOException {
+        switch (detect(file)) {
+            case GZIP:
+                try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                    if (raf.length() < GZIP_TRAILER_LENGTH) {
+                        return file.length();
+                    }
+                    raf.seek(raf.length() - Integer.BYTES);
+                    long size = Integer.reverseBytes(raf.readInt()) & 0xFFFFFFFFL;
+                    return Math.max(size, file.length());
+                }
+            case ZIP:
+                try (ZipFile zip = new ZipFile(file)) {
+                    if (entryName == null) {
+                        List<String> entries = listCsvEntries(file);
+                        if (entries.isEmpty()) {
+                            return file.length();
+                        }
+                        entryName = entries.get(0);
+                    }
+                    ZipEntry entry = zip.getEntry(entryName);
+                    return entry != null && entry.getSize() >= 0 ? entry.getSize() : file.length();
+                }
+            default:
+                return file.length();
+        }
+    }
+
+    /**
+     * 检测输入流的压缩格式（mark/reset，不消费数据），返回解压后的输入流
+     * zip流读取第一个CSV条目
+     */
+    public InputStream decompress(BufferedInputStream input) throws IOException {
+        input.mark(MAGIC_LENGTH);
+        byte[] magic = input.readNBytes(MAGIC_LENGTH);
+        input.reset();
+
+        switch (detect(magic, magic.length)) {
+            case GZIP:
+                return new GZIPInputStream(input, BUFFER_SIZE);
+            case ZIP:
+                // 流只能顺序读取，定位到第一个.csv条目
+                ZipInputStream zip = new ZipInputStream(input);
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    if (isDataEntry(entry) && entry.getName().toLowerCase().endsWith(".csv")) {
+                        return zip;
+                    }
+                }
+                throw new IllegalArgumentException("zip流中没有CSV文件");
+            default:
+                return input;
+        }
+    }
+
+    private boolean isDataEntry(ZipEntry entry) {
+        return !entry.isDirectory() && !entry.getName().startsWith("__MACOSX/");
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.rulerDesktop.service;
+
+import com.example.rulerDesktop.model.CsvDialect;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * 字节级CSV分词器
+ * 直接在读入的字节缓冲区上运行状态机，只记录每个字段在缓冲区中的起止位置，
+ * 调用getString时才按需生成字符串（重复的值通过ValueDeduplicator共享实例）；
+ * 数值列在列概况之后统一解码（见DataNormalizationService.attachNumericColumns和NumericScanner）。
+ * 仅适用于分隔符、引号、换行等结构字符不会出现在多字节字符内部的情况（见supports）：
+ * UTF-8和ISO-8859-1中ASCII字符总是单独的字节；GBK系列双字节字符的第二个字节在0x40-0xFE之间，
+ * 只有低于0x40的结构字符（如','、';'、'\t'、'"'、换行）是安全的，'|'等分隔符需要先解码为字符再分词。
+ * 分隔符和引号字符由CsvDialect指定，必须是ASCII字符
+ */
+public class CsvByteTokenizer {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream input;
+    private final Charset charset;
+    private final byte delimiter;
+    private final byte quote;
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private boolean endOfStream = false;
+
+    // 当前记录在缓冲区中的起点（缓冲区压缩时作为保留起点）
+    private int recordStart = 0;
+    private int fieldStart = 0;
+
+    // 当前记录的字段位置
+    private int fieldCount = 0;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private boolean[] fieldQuoted = new boolean[16];
+
+    // 带引号字段去除转义时使用的临时缓冲区
+    private byte[] scratch = new byte[256];
+
+    public CsvByteTokenizer(InputStream input, Charset charset) {
+        this(input, charset, CsvDialect.DEFAULT);
+    }
+
+    public CsvByteTokenizer(InputStream input, Charset charset, CsvDialect dialect) {
+        this.input = input;
+        this.charset = charset;
+        this.delimiter = (byte) dialect.getDelimiter();
+        this.quote = (byte) dialect.getQuote();
+    }
+
+    /**
+     * 判断编码和方言是否可以使用字节级分词
+     */
+    public static boolean supports(Charset charset, CsvDialect dialect) {
+        String name = charset.name();
+        boolean supported = name.equals("UTF-8") || name.equals("US-ASCII") || name.equals("ISO-8859-1")
+                || isGbFamily(charset);
+        return supported && isSingleByte(charset, dialect.getDelimiter()) && isSingleByte(charset, dialect.getQuote());
+    }
+
+    /**
+     * 结构字符在该编码中是否只会作为单独的字节出现，不会与多字节字符的某个字节相同
+     * （按字节查找记录边界时引号和换行必须满足这一点）
+     */
+    public static boolean isSingleByte(Charset charset, char c) {
+        if (c >= 0x80) {
+            return false;
+        }
+        // GBK系列双字节字符的第二个字节范围是0x40-0xFE
+        return c < 0x40 || !isGbFamily(charset);
+    }
+
+    private static boolean isGbFamily(Charset charset) {
+        String name = charset.name();
+        return name.equals("GBK") || name.equals("GB2312") || name.equals("GB18030");
+    }
+
+    /**
+     * 读取下一条记录，跳过只包含空白字符的行
+     *
+     * @return 是否读到记录，到达流末尾时返回false
+     */
+    public boolean nextRecord() throws IOException {
+        while (true) {
+            // 上一条记录的字段不再需要，缓冲区压缩时从当前位置开始保留
+            recordStart = position;
+            fieldCount = 0;
+            if (position >= limit && !fill()) {
+                return false;
+            }
+
+            fieldStart = position;
+            boolean quoted = false;
+            boolean inQuotes = false;
+            boolean hasContent = false;
+            int recordEnd;
+
+            while (true) {
+                if (position >= limit && !fill()) {
+                    // 流结束，最后一条记录没有换行符
+                    recordEnd = position;
+                    break;
+                }
+
+                byte b = buffer[position++];
+
+                if (inQuotes) {
+                    if (b == quote) {
+                        if ((position < limit || fill()) && buffer[position] == quote) {
+                            // 转义的引号
+                            position++;
+                        } else {
+                            inQuotes = false;
+                        }
+                    }
+                } else if (b == quote) {
+                    inQuotes = true;
+                    quoted = true;
+                    hasContent = true;
+                } else if (b == delimiter) {
+                    addField(fieldStart, position - 1, quoted);
+                    fieldStart = position;
+                    quoted = false;
+                    hasContent = true;
+                } else if (b == '\n') {
+                    recordEnd = position - 1;
+                    break;
+                } else if (b == '\r') {
+                    // CRLF作为一个记录结束符；查看下一个字节时缓冲区可能被压缩，之后再记录结束位置
+                    boolean crlf = (position < limit || fill()) && buffer[position] == '\n';
+                    recordEnd = position - 1;
+                    if (crlf) {
+                        position++;
+                    }
+                    break;
+                } else if ((b & 0xFF) > ' ') {
+                    hasContent = true;
+                }
+            }
+
+            if (hasContent) {
+                addField(fieldStart, recordEnd, quoted);
+                return true;
+            }
+            // 空白行，继续读取下一条
+        }
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * 字段去除首尾空白后是否为空（不生成字符串）
+     */
+    public boolean isEmpty(int index) {
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+
+        if (!fieldQuoted[index]) {
+            for (int i = start; i < end; i++) {
+                if ((buffer[i] & 0xFF) > ' ') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean inQuotes = false;
+        for (int i = start; i < end; i++) {
+            byte b = buffer[i];
+            if (b == quote) {
+                if (inQuotes && i + 1 < end && buffer[i + 1] == quote) {
+                    return false;
+                }
+                inQuotes = !inQuotes;
+            } else if ((b & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 生成字段的字符串值（去除引号和首尾空白）
+     */
+    public String getString(int index) {
+        return getString(index, null);
+    }
+
+    /**
+     * 生成字段的字符串值，通过去重缓存复用相同字节对应的字符串实例
+     *
+     * @param deduplicator 该列的去重缓存，为null时总是生成新字符串
+     */
+    public String getString(int index, ValueDeduplicator deduplicator) {
+        byte[] source = buffer;
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+
+        if (fieldQuoted[index]) {
+            end = unescape(start, end);
+            start = 0;
+            source = scratch;
+        }
+
+        // 结构字符都是ASCII，按字节去除空白与解码后按字符去除结果相同
+        while (start < end && (source[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (source[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+
+        if (start == end) {
+            return "";
+        }
+        if (deduplicator != null) {
+            return deduplicator.get(source, start, end - start);
+        }
+        return new String(source, start, end - start, charset);
+    }
+
+    /**
+     * 去除带引号字段中的引号和转义，结果写入scratch，返回长度
+     */
+    private int unescape(int start, int end) {
+        if (scratch.length < end - start) {
+            scratch = new byte[Math.max(end - start, scratch.length * 2)];
+        }
+
+        int length = 0;
+        boolean inQuotes = false;
+        for (int i = start; i < end; i++) {
+            byte b = buffer[i];
+            if (b == quote) {
+                if (inQuotes && i + 1 < end && buffer[i + 1] == quote) {
+                    scratch[length++] = quote;
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else {
+                scratch[length++] = b;
+            }
+        }
+        return length;
+    }
+
+    private void addField(int start, int end, boolean quoted) {
+        if (fieldCount == fieldStarts.length) {
+            int newLength = fieldCount * 2;
+            fieldStarts = Arrays.copyOf(fieldStarts, newLength);
+            fieldEnds = Arrays.copyOf(fieldEnds, newLength);
+            fieldQuoted = Arrays.copyOf(fieldQuoted, newLength);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldQuoted[fieldCount] = quoted;
+        fieldCount++;
+    }
+
+    /**
+     * 读取更多数据
+     * 当前记录已读取的部分移动到缓冲区开头（记录超过缓冲区时扩容），已记录的字段位置随之平移
+     */
+    private boolean fill() throws IOException {
+        if (endOfStream) {
+            return false;
+        }
+
+        if (recordStart > 0) {
+            int shift = recordStart;
+            System.arraycopy(buffer, shift, buffer, 0, limit - shift);
+            for (int i = 0; i < fieldCount; i++) {
+                fieldStarts[i] -= shift;
+                fieldEnds[i] -= shift;
+            }
+            fieldStart -= shift;
+            position -= shift;
+            limit -= shift;
+            recordStart = 0;
+        }
+
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        int count;
+        do {
+            count = input.read(buffer, limit, buffer.length - limit);
+        } while (count == 0);
+
+        if (count < 0) {
+            endOfStream = true;
+            return false;
+        }
+
+        limit += count;
+        return true;
+    }
+}
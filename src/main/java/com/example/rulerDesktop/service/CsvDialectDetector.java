@@ -0,0 +1,238 @@
+package com.example.rulerDesktop.service;
+
+import com.example.rulerDesktop.model.CsvDialect;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CSV方言检测服务类
+ * 只分析文件开头的一段样本（与编码检测共用同一段样本，不额外读取整个文件）：
+ * 引号字符按出现在字段开头的次数选择；分隔符选择各记录字段数最一致的候选；
+ * 标题行按第一条记录与其余记录的类型和长度差异投票判断
+ */
+public class CsvDialectDetector {
+
+    // 候选分隔符，按优先级排列（一致性相同时选择靠前的）
+    private static final char[] CANDIDATE_DELIMITERS = {',', ';', '\t', '|'};
+    // 候选引号字符，按优先级排列
+    private static final char[] CANDIDATE_QUOTES = {'"', '\''};
+    // 参与检测的最大记录数
+    private static final int MAX_SAMPLE_RECORDS = 100;
+
+    private final DataNormalizationService dataNormalizationService = new DataNormalizationService();
+
+    /**
+     * 检测样本的方言
+     *
+     * @param sample 文件开头的样本（已解码）
+     * @param complete 样本是否是完整的文件；不完整时丢弃最后一条可能被截断的记录
+     */
+    public CsvDialect detect(String sample, boolean complete) {
+        char quote = detectQuote(sample);
+        List<String> records = splitRecords(sample, quote, complete);
+        if (records.isEmpty()) {
+            return CsvDialect.DEFAULT;
+        }
+
+        char delimiter = detectDelimiter(records, quote);
+        List<List<String>> fields = new ArrayList<>(records.size());
+        for (String record : records) {
+            fields.add(splitFields(record, delimiter, quote));
+        }
+        return new CsvDialect(delimiter, quote, detectHeader(fields));
+    }
+
+    /**
+     * 选择出现在字段开头（行首或候选分隔符之后）次数最多的引号字符
+     */
+    private char detectQuote(String sample) {
+        char best = CANDIDATE_QUOTES[0];
+        int bestCount = 0;
+        for (char quote : CANDIDATE_QUOTES) {
+            int count = 0;
+            for (int i = 0; i < sample.length(); i++) {
+                if (sample.charAt(i) == quote && isFieldStart(sample, i)) {
+                    count++;
+                }
+            }
+            if (count > bestCount) {
+                best = quote;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    private boolean isFieldStart(String sample, int index) {
+        int i = index - 1;
+        while (i >= 0 && sample.charAt(i) == ' ') {
+            i--;
+        }
+        if (i < 0) {
+            return true;
+        }
+        char previous = sample.charAt(i);
+        if (previous == '\n' || previous == '\r') {
+            return true;
+        }
+        for (char delimiter : CANDIDATE_DELIMITERS) {
+            if (previous == delimiter) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按引号外的换行符把样本切分为记录，跳过空白行
+     */
+    private List<String> splitRecords(String sample, char quote, boolean complete) {
+        List<String> records = new ArrayList<>();
+        boolean inQuotes = false;
+        int start = 0;
+        for (int i = 0; i < sample.length() && records.size() < MAX_SAMPLE_RECORDS; i++) {
+            char c = sample.charAt(i);
+            if (c == quote) {
+                inQuotes = !inQuotes;
+            } else if ((c == '\n' || c == '\r') && !inQuotes) {
+                addRecord(records, sample.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (complete && records.size() < MAX_SAMPLE_RECORDS && start < sample.length()) {
+            addRecord(records, sample.substring(start));
+        }
+        return records;
+    }
+
+    private void addRecord(List<String> records, String record) {
+        if (!record.isBlank()) {
+            records.add(record);
+        }
+    }
+
+    /**
+     * 选择各记录字段数最一致的分隔符：字段数的众数至少为2，众数出现的比例最高
+     * 都不满足时使用逗号（单列文件）
+     */
+    private char detectDelimiter(List<String> records, char quote) {
+        char best = CsvDialect.DEFAULT.getDelimiter();
+        double bestConsistency = 0;
+        for (char delimiter : CANDIDATE_DELIMITERS) {
+            Map<Integer, Integer> countFrequency = new HashMap<>();
+            for (String record : records) {
+                countFrequency.merge(countFields(record, delimiter, quote), 1, Integer::sum);
+            }
+
+            int modeCount = 0;
+            int modeFrequency = 0;
+            for (Map.Entry<Integer, Integer> entry : countFrequency.entrySet()) {
+                if (entry.getValue() > modeFrequency
+                        || (entry.getValue() == modeFrequency && entry.getKey() > modeCount)) {
+                    modeCount = entry.getKey();
+                    modeFrequency = entry.getValue();
+                }
+            }
+
+            double consistency = (double) modeFrequency / records.size();
+            if (modeCount > 1 && consistency > bestConsistency) {
+                best = delimiter;
+                bestConsistency = consistency;
+            }
+        }
+        return best;
+    }
+
+    private int countFields(String record, char delimiter, char quote) {
+        int count = 1;
+        boolean inQuotes = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (c == quote) {
+                inQuotes = !inQuotes;
+            } else if (c == delimiter && !inQuotes) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 切分一条记录的字段（去除引号和首尾空白）
+     */
+    private List<String> splitFields(String record, char delimiter, char quote) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (c == quote) {
+                if (inQuotes && i + 1 < record.length() && record.charAt(i + 1) == quote) {
+                    field.append(quote);
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else if (c == delimiter && !inQuotes) {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    /**
+     * 判断第一条记录是否为标题行
+     * 逐列比较第一条记录与其余记录：其余都是数值而第一条不是、或其余长度相同而第一条不同时支持标题，
+     * 反之支持数据；票数不为负时认为有标题（与之前总是把第一条记录作为标题的行为一致）
+     */
+    private boolean detectHeader(List<List<String>> records) {
+        if (records.size() < 2) {
+            return true;
+        }
+
+        List<String> first = records.get(0);
+        int votes = 0;
+        for (int column = 0; column < first.size(); column++) {
+            String candidate = first.get(column);
+            if (candidate.isEmpty()) {
+                continue;
+            }
+
+            boolean allNumeric = true;
+            int length = -1;
+            boolean sameLength = true;
+            int valueCount = 0;
+            for (int i = 1; i < records.size(); i++) {
+                List<String> record = records.get(i);
+                if (column >= record.size() || record.get(column).isEmpty()) {
+                    continue;
+                }
+                String value = record.get(column);
+                valueCount++;
+                allNumeric &= dataNormalizationService.isNumericValue(value);
+                if (length < 0) {
+                    length = value.length();
+                } else if (length != value.length()) {
+                    sameLength = false;
+                }
+            }
+
+            if (valueCount == 0) {
+                continue;
+            }
+            if (allNumeric) {
+                votes += dataNormalizationService.isNumericValue(candidate) ? -1 : 1;
+            } else if (sameLength) {
+                votes += candidate.length() == length ? -1 : 1;
+            }
+        }
+        return votes >= 0;
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.rulerDesktop.service;
+
+import com.example.rulerDesktop.model.ColumnVector;
+import com.example.rulerDesktop.model.CsvData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * CSV导出服务类
+ * 按行块并行格式化：每个行块由线程池中的任务直接编码为UTF-8字节（转义和编码一次完成，不生成中间字符串），
+ * 写入可复用的块缓冲区，再由调用线程按顺序通过FileChannel写出。
+ * 字典编码列的每个不同值只转义编码一次。
+ * gzip输出时每个行块独立压缩为一个gzip成员（多成员gzip，GZIPInputStream和常用工具都能直接读取），
+ * 压缩也在各任务中并行进行
+ */
+public class CsvExportService {
+
+    // 每个行块的行数
+    private static final int BLOCK_ROWS = 16 * 1024;
+    // 每个线程同时格式化的行块数上限（限制缓冲区占用的内存）
+    private static final int BLOCKS_PER_THREAD = 2;
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final String GZIP_EXTENSION = ".gz";
+
+    /**
+     * 导出到文件，文件名以.gz结尾时输出gzip压缩的CSV
+     */
+    public void export(CsvData csvData, File file) throws IOException {
+        export(csvData, file, file.getName().toLowerCase().endsWith(GZIP_EXTENSION));
+    }
+
+    /**
+     * 导出到文件，并行度为CPU核数
+     *
+     * @param gzip 是否输出gzip压缩的CSV
+     */
+    public void export(CsvData csvData, File file, boolean gzip) throws IOException {
+        export(csvData, file, gzip, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 导出到文件
+     * 文件开头写入UTF-8 BOM，确保Excel正确识别编码；行分隔符为系统换行符
+     *
+     * @param gzip 是否输出gzip压缩的CSV
+     * @param parallelism 并行格式化的线程数
+     */
+    public void export(CsvData csvData, File file, boolean gzip, int parallelism) throws IOException {
+        List<String> headers = csvData.getHeaders();
+        List<ColumnVector> columns = new ArrayList<>(headers.size());
+        for (String header : headers) {
+            columns.add(csvData.getColumn(header));
+        }
+        byte[][][] encodedDictionaries = encodeDictionaries(columns);
+        int rowCount = csvData.getRowCount();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // BOM和标题行
+            BlockBuffer headerBlock = new BlockBuffer(gzip);
+            headerBlock.writeBytes(UTF8_BOM);
+            for (int i = 0; i < headers.size(); i++) {
+                if (i > 0) {
+                    headerBlock.writeByte(',');
+                }
+                headerBlock.writeField(headers.get(i));
+            }
+            headerBlock.writeBytes(LINE_SEPARATOR);
+            writeBlock(channel, headerBlock.finish());
+
+            int threads = Math.max(1, parallelism);
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                ArrayDeque<Future<BlockBuffer>> pending = new ArrayDeque<>();
+                ArrayDeque<BlockBuffer> freeBuffers = new ArrayDeque<>();
+                int maxPending = threads * BLOCKS_PER_THREAD;
+
+                for (int from = 0; from < rowCount; from += BLOCK_ROWS) {
+                    // 在途的行块达到上限时先按顺序写出最早的一块，缓冲区回收复用
+                    if (pending.size() >= maxPending) {
+                        freeBuffers.add(writeNext(channel, pending));
+                    }
+                    BlockBuffer buffer = freeBuffers.isEmpty() ? new BlockBuffer(gzip) : freeBuffers.poll();
+                    int blockFrom = from;
+                    int blockTo = Math.min(rowCount, from + BLOCK_ROWS);
+                    pending.add(pool.submit(() -> {
+                        formatRows(buffer, columns, encodedDictionaries, blockFrom, blockTo);
+                        buffer.finish();
+                        return buffer;
+                    }));
+                }
+                while (!pending.isEmpty()) {
+                    writeNext(channel, pending);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * 字典编码列的每个不同值预先转义并编码为字节，非字典编码列为null
+     */
+    private byte[][][] encodeDictionaries(List<ColumnVector> columns) {
+        byte[][][] encoded = new byte[columns.size()][][];
+        BlockBuffer buffer = new BlockBuffer(false);
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnVector column = columns.get(i);
+            if (column == null || !column.isDictionaryEncoded()) {
+                continue;
+            }
+            List<String> dictionary = column.getDictionary();
+            encoded[i] = new byte[dictionary.size()][];
+            for (int code = 0; code < dictionary.size(); code++) {
+                buffer.reset();
+                buffer.writeField(dictionary.get(code));
+                encoded[i][code] = Arrays.copyOf(buffer.data, buffer.length);
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * 把[from, to)行格式化到块缓冲区
+     */
+    private void formatRows(BlockBuffer buffer, List<ColumnVector> columns, byte[][][] encodedDictionaries,
+                            int from, int to) {
+        buffer.reset();
+        for (int rowIndex = from; rowIndex < to; rowIndex++) {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    buffer.writeByte(',');
+                }
+                ColumnVector column = columns.get(i);
+                if (column == null) {
+                    continue;
+                }
+                if (encodedDictionaries[i] != null) {
+                    buffer.writeBytes(encodedDictionaries[i][column.getCode(rowIndex)]);
+                } else {
+                    buffer.writeField(column.get(rowIndex));
+                }
+            }
+            buffer.writeBytes(LINE_SEPARATOR);
+        }
+    }
+
+    /**
+     * 等待最早提交的行块格式化完成并写出，返回可复用的缓冲区
+     */
+    private BlockBuffer writeNext(FileChannel channel, ArrayDeque<Future<BlockBuffer>> pending) throws IOException {
+        BlockBuffer buffer;
+        try {
+            buffer = pending.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("导出被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("导出失败", cause);
+        }
+        writeBlock(channel, buffer.output());
+        return buffer;
+    }
+
+    private void writeBlock(FileChannel channel, ByteBuffer block) throws IOException {
+        while (block.hasRemaining()) {
+            channel.write(block);
+        }
+    }
+
+    /**
+     * 可复用的行块缓冲区：UTF-8字节，gzip时另有压缩后的字节
+     */
+    private static class BlockBuffer {
+        private static final int INITIAL_CAPACITY = 64 * 1024;
+        // gzip成员头：魔数、deflate、无标志、无修改时间（与GZIPOutputStream一致）
+        private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+        private static final int GZIP_TRAILER_LENGTH = 8;
+
+        private byte[] data = new byte[INITIAL_CAPACITY];
+        private int length = 0;
+
+        private final Deflater deflater;
+        private final CRC32 crc;
+        private byte[] compressed;
+        private int compressedLength;
+
+        BlockBuffer(boolean gzip) {
+            // 使用最快的压缩级别，导出受磁盘写入而不是压缩速度限制
+            this.deflater = gzip ? new Deflater(Deflater.BEST_SPEED, true) : null;
+            this.crc = gzip ? new CRC32() : null;
+            this.compressed = gzip ? new byte[INITIAL_CAPACITY] : null;
+        }
+
+        void reset() {
+            length = 0;
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            data[length++] = (byte) b;
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, data, length, bytes.length);
+            length += bytes.length;
+        }
+
+        /**
+         * 写入一个字段：包含逗号、引号或换行符时用引号包围，内部引号加倍；同时编码为UTF-8
+         */
+        void writeField(String field) {
+            if (field == null) {
+                return;
+            }
+            int count = field.length();
+            boolean quote = false;
+            for (int i = 0; i < count && !quote; i++) {
+                char c = field.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+
+            // 每个字符最多3个字节（引号加倍为2个字节，代理对2个字符4个字节），另加首尾引号
+            ensureCapacity(count * 3 + 2);
+            byte[] bytes = data;
+            int position = length;
+            if (quote) {
+                bytes[position++] = '"';
+            }
+            for (int i = 0; i < count; i++) {
+                char c = field.charAt(i);
+                if (c < 0x80) {
+                    if (c == '"') {
+                        bytes[position++] = '"';
+                    }
+                    bytes[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[position++] = (byte) (0xC0 | (c >> 6));
+                    bytes[position++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < count
+                        && Character.isLowSurrogate(field.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, field.charAt(++i));
+                    bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // 不成对的代理字符按String.getBytes的规则替换为'?'
+                    bytes[position++] = '?';
+                } else {
+                    bytes[position++] = (byte) (0xE0 | (c >> 12));
+                    bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            if (quote) {
+                bytes[position++] = '"';
+            }
+            length = position;
+        }
+
+        /**
+         * 结束当前行块，gzip时把内容压缩为一个完整的gzip成员
+         */
+        ByteBuffer finish() {
+            if (deflater != null) {
+                compress();
+            }
+            return output();
+        }
+
+        /**
+         * 要写出的字节（finish()之后调用）
+         */
+        ByteBuffer output() {
+            return deflater != null
+                    ? ByteBuffer.wrap(compressed, 0, compressedLength)
+                    : ByteBuffer.wrap(data, 0, length);
+        }
+
+        private void compress() {
+            System.arraycopy(GZIP_HEADER, 0, compressed, 0, GZIP_HEADER.length);
+            compressedLength = GZIP_HEADER.length;
+
+            deflater.reset();
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (compressedLength == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            }
+
+            crc.reset();
+            crc.update(data, 0, length);
+            if (compressedLength + GZIP_TRAILER_LENGTH > compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressedLength + GZIP_TRAILER_LENGTH);
+            }
+            // 尾部：CRC32和原始长度，小端
+            writeIntLE((int) crc.getValue());
+            writeIntLE(length);
+        }
+
+        private void writeIntLE(int value) {
+            compressed[compressedLength++] = (byte) value;
+            compressed[compressedLength++] = (byte) (value >>> 8);
+            compressed[compressedLength++] = (byte) (value >>> 16);
+            compressed[compressedLength++] = (byte) (value >>> 24);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(length + extra, data.length * 2));
+            }
+        }
+    }
+}
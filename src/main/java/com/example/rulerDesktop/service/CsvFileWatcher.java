@@ -0,0 +1,79 @@
+package com.example.rulerDesktop.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * 监视单个CSV文件的变化（跟踪模式）
+ * 通过WatchService监视文件所在目录，目标文件被修改或重新创建时在监视线程上调用回调
+ */
+public class CsvFileWatcher implements Closeable {
+
+    private final WatchService watchService;
+    private final Thread watchThread;
+
+    /**
+     * 开始监视
+     *
+     * @param file 要监视的文件
+     * @param onChange 文件变化时的回调，在监视线程上调用
+     */
+    public CsvFileWatcher(File file, Runnable onChange) throws IOException {
+        Path path = file.toPath().toAbsolutePath();
+        Path directory = path.getParent();
+        Path fileName = path.getFileName();
+
+        this.watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+
+        this.watchThread = new Thread(() -> watch(fileName, onChange), "csv-watcher");
+        this.watchThread.setDaemon(true);
+        this.watchThread.start();
+    }
+
+    private void watch(Path fileName, Runnable onChange) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // 事件溢出时无法确定是哪个文件，按变化处理
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                // 同一批事件只回调一次
+                if (changed) {
+                    try {
+                        onChange.run();
+                    } catch (Exception e) {
+                        System.err.println("处理文件变化时出错: " + e.getMessage());
+                    }
+                }
+                if (!key.reset()) {
+                    break; // 目录已不可访问
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // 已停止监视
+        }
+    }
+
+    /**
+     * 停止监视
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        watchThread.interrupt();
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.rulerDesktop.service;
+
+import com.example.rulerDesktop.model.CsvData;
+
+/**
+ * 渐进加载的回调接口，在解析线程上调用
+ */
+public interface CsvLoadListener {
+
+    /**
+     * 读取进度
+     *
+     * @param bytesRead 已读取的字节数（压缩文件为解压后的字节数）
+     * @param totalBytes 文件总字节数，压缩文件为-1
+     * @param rowsParsed 已解析的行数
+     */
+    void onProgress(long bytesRead, long totalBytes, int rowsParsed);
+
+    /**
+     * 已解析部分的预览（独立的堆内副本，可以交给其他线程使用，不依赖加载使用的堆外存储）
+     * 第一次在解析到少量行后调用，之后随着行数按倍数增长再次调用；
+     * 回调时解析线程在等待，耗时的处理应交给其他线程
+     */
+    void onPreview(CsvData preview);
+}
@@ -1,13 +1,24 @@
 package com.example.rulerDesktop.service;
 
+import com.example.rulerDesktop.model.ColumnProfile;
+import com.example.rulerDesktop.model.ColumnVector;
 import com.example.rulerDesktop.model.CsvData;
+import com.example.rulerDesktop.model.CsvDialect;
 import com.example.rulerDesktop.model.DataPoint;
+import com.example.rulerDesktop.model.NullTokenSet;
+import com.example.rulerDesktop.model.OffHeapStorage;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * CSV文件解析服务类
@@ -16,11 +27,33 @@ import java.util.regex.Pattern;
  */
 public class CsvParsingService {
 
-    private static final String DEFAULT_DELIMITER = ",";
-    private static final String QUOTE_CHAR = "\"";
-    private static final Pattern CSV_PATTERN = Pattern.compile(
-            "(?:^|,)\\s*(?:\"([^\"]*(?:\"\"[^\"]*)*)\"|([^\",]*))"
-    );
+    // 流式读取缓冲区大小
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // 编码和方言检测的样本大小
+    private static final int ENCODING_SAMPLE_SIZE = 64 * 1024;
+    // 小于该大小的文件不使用并行解析
+    private static final long PARALLEL_THRESHOLD = 16L * 1024 * 1024;
+    // 单次内存映射的最大字节数
+    private static final long MAX_CHUNK_SIZE = 256L * 1024 * 1024;
+    // 渐进加载：第一次预览的行数、之后每次预览的行数倍数、进度回调的行间隔
+    private static final int PREVIEW_ROWS = 5000;
+    private static final int PREVIEW_GROWTH_FACTOR = 4;
+    // 堆外加载的预览复制到堆内，超过该行数后不再生成预览，避免预览占用过多堆内存
+    private static final int OFF_HEAP_PREVIEW_MAX_ROWS = 1_000_000;
+    private static final int PROGRESS_INTERVAL_ROWS = 16 * 1024;
+
+    private final CharsetDetector charsetDetector = new CharsetDetector();
+    private final CsvDialectDetector dialectDetector = new CsvDialectDetector();
+    private final CompressionDetector compressionDetector = new CompressionDetector();
+    private final ColumnProfiler columnProfiler = new ColumnProfiler();
+    private final CsvSnapshotService snapshotService = new CsvSnapshotService();
+    private final CsvExportService exportService = new CsvExportService();
+    private final DataNormalizationService dataNormalizationService = new DataNormalizationService();
+
+    // 文件大小（压缩文件为解压后的大小）达到该值时列数据保存在堆外（见OffHeapStorage），默认为最大堆的四分之一
+    private long offHeapThreshold = Runtime.getRuntime().maxMemory() / 4;
+    // 空值标记，解析时逐列判断（见ColumnVector），标准化时不再匹配字符串
+    private NullTokenSet nullTokens = NullTokenSet.DEFAULT;
 
     /**
      * 从文件路径加载并解析CSV
@@ -33,163 +66,874 @@ public class CsvParsingService {
      * 从File对象加载并解析CSV
      */
     public CsvData loadAndAnalyzeCsv(File csvFile) throws IOException {
-        if (!csvFile.exists()) {
-            throw new FileNotFoundException("CSV文件不存在: " + csvFile.getAbsolutePath());
-        }
+        return loadAndAnalyzeCsv(csvFile, null);
+    }
 
-        if (!csvFile.getName().toLowerCase().endsWith(".csv")) {
-            throw new IllegalArgumentException("文件必须是CSV格式");
+    /**
+     * 使用已知编码加载CSV（例如重新加载时使用上次检测到的CsvData.getCharset()），跳过编码检测
+     * gzip和zip压缩的文件边读边解压，zip读取第一个CSV条目
+     *
+     * @param charset 文件编码，为null时自动检测
+     */
+    public CsvData loadAndAnalyzeCsv(File csvFile, Charset charset) throws IOException {
+        validateCsvFile(csvFile);
+        return loadStream(csvFile, charset, null);
+    }
+
+    /**
+     * 只加载选中的列（列名来自readHeaders()），未选中的字段在分词时跳过，不生成字符串。
+     * 内存和解析时间与选中的列数成正比，与文件宽度无关
+     *
+     * @param selectedColumns 要加载的列，为null时加载全部列；结果中的列保持文件中的顺序
+     */
+    public CsvData loadSelectedColumns(File csvFile, Collection<String> selectedColumns) throws IOException {
+        validateCsvFile(csvFile);
+        return loadParallel(csvFile, Runtime.getRuntime().availableProcessors(), selectedColumns);
+    }
+
+    /**
+     * 只读取标题行，返回处理后的列名（与加载结果中的列名一致），用于选择要加载的列
+     */
+    public List<String> readHeaders(File csvFile) throws IOException {
+        validateCsvFile(csvFile);
+
+        try (InputStream inputStream = compressionDetector.open(csvFile, null)) {
+            BufferedInputStream input = new BufferedInputStream(inputStream, READ_BUFFER_SIZE);
+            Charset charset = resolveCharset(input, null);
+            CsvDialect dialect = resolveDialect(input, charset);
+            List<String> firstRecord = new CsvTokenizer(new InputStreamReader(input, charset), dialect).nextRecord();
+            if (firstRecord == null) {
+                throw new IllegalArgumentException("CSV文件为空");
+            }
+            return buildHeaders(firstRecord, dialect);
         }
+    }
+
+    /**
+     * 流式解析文件（gzip和zip边读边解压）
+     */
+    private CsvData loadStream(File csvFile, Charset charset, Collection<String> selectedColumns) throws IOException {
+        return loadStream(csvFile, charset, selectedColumns, null);
+    }
 
-        try (InputStream inputStream = Files.newInputStream(csvFile.toPath())) {
-            CsvData result = loadAndAnalyzeCsv(inputStream);
+    /**
+     * 流式解析文件，job不为null时报告进度并检查取消（压缩文件的总字节数未知）
+     */
+    private CsvData loadStream(File csvFile, Charset charset, Collection<String> selectedColumns,
+                               ImportJob job) throws IOException {
+        OffHeapStorage storage = createStorage(compressionDetector.estimateUncompressedSize(csvFile, null));
+        try (CountingInputStream inputStream = new CountingInputStream(compressionDetector.open(csvFile, null))) {
+            long totalBytes = compressionDetector.detect(csvFile) == CompressionDetector.Format.NONE
+                    ? csvFile.length() : -1;
+            LoadProgress progress = job != null ? new LoadProgress(null, job, inputStream, totalBytes) : null;
+            CsvData result = parseStream(inputStream, charset, selectedColumns, progress, storage);
             result.setFileName(csvFile.getName());
             return result;
+        } catch (IOException | RuntimeException e) {
+            closeStorage(storage);
+            throw e;
         }
     }
 
+    /**
+     * 加载zip中指定的CSV条目（直接读取条目的解压流，不解压到临时文件）
+     */
+    public CsvData loadAndAnalyzeZipEntry(File zipFile, String entryName) throws IOException {
+        validateCsvFile(zipFile);
+
+        try (InputStream inputStream = compressionDetector.open(zipFile, entryName)) {
+            CsvData result = parseStream(inputStream, null, null, null, null);
+            result.setFileName(new File(entryName).getName());
+            return result;
+        }
+    }
+
+    /**
+     * 列出zip中可加载的CSV条目，不是zip文件时返回空列表
+     */
+    public List<String> listZipEntries(File file) throws IOException {
+        if (compressionDetector.detect(file) != CompressionDetector.Format.ZIP) {
+            return Collections.emptyList();
+        }
+        return compressionDetector.listCsvEntries(file);
+    }
+
     /**
      * 从InputStream加载并解析CSV
      */
     public CsvData loadAndAnalyzeCsv(InputStream inputStream) throws IOException {
-        // 尝试检测编码
-        String content = readStreamWithEncoding(inputStream);
-        String[] lines = content.split("\r?\n");
+        return loadAndAnalyzeCsv(inputStream, null);
+    }
 
-        if (lines.length == 0) {
+    /**
+     * 从InputStream加载并解析CSV
+     * 流式读取：分词器在固定大小的缓冲区上单遍解析整个输入（支持引号内换行），
+     * 边读边追加到列向量，峰值内存只有解析结果加上一个常量大小的缓冲区。
+     * UTF-8、GBK等编码直接在字节上分词（CsvByteTokenizer），只为需要的字段生成字符串；
+     * 其他编码先解码为字符再分词。
+     * 分隔符、引号字符和是否有标题行根据同一段样本检测（见CsvDialectDetector）
+     *
+     * gzip/zip流根据魔数自动解压（zip流读取第一个CSV条目）
+     *
+     * @param charset 已知编码，为null时根据文件开头的样本检测
+     */
+    public CsvData loadAndAnalyzeCsv(InputStream inputStream, Charset charset) throws IOException {
+        BufferedInputStream input = new BufferedInputStream(inputStream, READ_BUFFER_SIZE);
+        return parseStream(compressionDetector.decompress(input), charset, null, null, null);
+    }
+
+    /**
+     * 渐进加载CSV
+     * 解析到PREVIEW_ROWS行时先通过listener交出一份预览，之后行数每增长PREVIEW_GROWTH_FACTOR倍再交出一次，
+     * 调用方可以先显示预览并逐步细化（使用堆外存储时只在前OFF_HEAP_PREVIEW_MAX_ROWS行内生成预览）；
+     * 期间定期回调已读取的字节数和行数。
+     * 适合在后台线程调用，返回完整的结果
+     */
+    public CsvData loadAndAnalyzeCsvProgressive(File csvFile, CsvLoadListener listener) throws IOException {
+        return loadAndAnalyzeCsvProgressive(csvFile, null, listener);
+    }
+
+    /**
+     * 渐进加载选中的列
+     *
+     * @param selectedColumns 要加载的列，为null时加载全部列
+     */
+    public CsvData loadAndAnalyzeCsvProgressive(File csvFile, Collection<String> selectedColumns,
+                                                CsvLoadListener listener) throws IOException {
+        validateCsvFile(csvFile);
+        return loadProgressive(csvFile, selectedColumns, listener, null);
+    }
+
+    private CsvData loadProgressive(File csvFile, Collection<String> selectedColumns, CsvLoadListener listener,
+                                    ImportJob job) throws IOException {
+        OffHeapStorage storage = createStorage(compressionDetector.estimateUncompressedSize(csvFile, null));
+        try (CountingInputStream inputStream = new CountingInputStream(compressionDetector.open(csvFile, null))) {
+            long totalBytes = compressionDetector.detect(csvFile) == CompressionDetector.Format.NONE
+                    ? csvFile.length() : -1;
+            LoadProgress progress = new LoadProgress(listener, job, inputStream, totalBytes);
+            CsvData result = parseStream(inputStream, null, selectedColumns, progress, storage);
+            result.setFileName(csvFile.getName());
+            progress.finish(result.getRowCount());
+            return result;
+        } catch (IOException | RuntimeException e) {
+            closeStorage(storage);
+            throw e;
+        }
+    }
+
+    /**
+     * 流式解析（见loadAndAnalyzeCsv(InputStream, Charset)），输入必须是已解压的CSV数据
+     *
+     * @param selectedColumns 要加载的列，为null时加载全部列
+     * @param progress 渐进加载的进度跟踪，为null时不回调
+     */
+    private CsvData parseStream(InputStream inputStream, Charset charset, Collection<String> selectedColumns,
+                                LoadProgress progress, OffHeapStorage storage) throws IOException {
+        BufferedInputStream input = new BufferedInputStream(inputStream, READ_BUFFER_SIZE);
+        charset = resolveCharset(input, charset);
+        CsvDialect dialect = resolveDialect(input, charset);
+
+        CsvData csvData;
+        if (CsvByteTokenizer.supports(charset, dialect)) {
+            csvData = parseRecords(new CsvByteTokenizer(input, charset, dialect), charset, dialect,
+                    selectedColumns, progress, storage);
+        } else {
+            csvData = parseRecords(new CsvTokenizer(new InputStreamReader(input, charset), dialect), dialect,
+                    selectedColumns, progress, storage);
+        }
+        csvData.setCharset(charset);
+        csvData.setDialect(dialect);
+        return csvData;
+    }
+
+    /**
+     * 使用字节级分词器解析标题和全部记录
+     */
+    private CsvData parseRecords(CsvByteTokenizer tokenizer, Charset charset, CsvDialect dialect,
+                                 Collection<String> selectedColumns, LoadProgress progress,
+                                 OffHeapStorage storage) throws IOException {
+        // 第一条非空记录作为标题
+        if (!tokenizer.nextRecord()) {
             throw new IllegalArgumentException("CSV文件为空");
         }
+        List<String> firstRecord = new ArrayList<>(tokenizer.getFieldCount());
+        for (int i = 0; i < tokenizer.getFieldCount(); i++) {
+            firstRecord.add(tokenizer.getString(i));
+        }
+        List<String> allHeaders = buildHeaders(firstRecord, dialect);
+        int[] fieldIndexes = resolveFieldIndexes(allHeaders, selectedColumns);
+        List<String> headers = selectHeaders(allHeaders, fieldIndexes);
+
+        // 逐条解析记录，直接追加到列向量，不保留中间结果
+        List<ColumnVector> columns = createColumns(headers, storage);
+        List<ValueDeduplicator> deduplicators = createDeduplicators(headers.size(), charset);
+        // 没有标题行时第一条记录也是数据
+        boolean pendingRecord = !dialect.hasHeader();
+        while (pendingRecord || tokenizer.nextRecord()) {
+            pendingRecord = false;
+            appendRecord(columns, tokenizer, deduplicators, fieldIndexes);
+            if (progress != null) {
+                progress.recordParsed(headers, columns);
+            }
+        }
+
+        return buildCsvData(headers, columns, storage, progress != null ? progress.job : null);
+    }
+
+    /**
+     * 使用字符分词器解析标题和全部记录
+     */
+    private CsvData parseRecords(CsvTokenizer tokenizer, CsvDialect dialect, Collection<String> selectedColumns,
+                                 LoadProgress progress, OffHeapStorage storage) throws IOException {
+        // 第一条非空记录作为标题
+        List<String> firstRecord = tokenizer.nextRecord();
+        if (firstRecord == null) {
+            throw new IllegalArgumentException("CSV文件为空");
+        }
+        List<String> allHeaders = buildHeaders(firstRecord, dialect);
+        int[] fieldIndexes = resolveFieldIndexes(allHeaders, selectedColumns);
+        List<String> headers = selectHeaders(allHeaders, fieldIndexes);
+
+        // 逐条解析记录，直接追加到列向量，不保留中间结果
+        List<ColumnVector> columns = createColumns(headers, storage);
+        // 没有标题行时第一条记录也是数据
+        List<String> record = dialect.hasHeader() ? tokenizer.nextRecord() : firstRecord;
+        for (; record != null; record = tokenizer.nextRecord()) {
+            appendRecord(columns, record, fieldIndexes);
+            if (progress != null) {
+                progress.recordParsed(headers, columns);
+            }
+        }
+
+        return buildCsvData(headers, columns, storage, progress != null ? progress.job : null);
+    }
+
+    /**
+     * 加载CSV，优先使用上次加载时写入的.ruler快照
+     * 快照有效时直接恢复列数据和列概况；否则并行解析CSV并写入新的快照。
+     * 快照恢复到堆内，达到堆外阈值的文件（或快照）不读取也不写入快照，始终解析到堆外存储。
+     * 快照读写失败不影响加载结果
+     */
+    public CsvData loadAndAnalyzeCsvCached(File csvFile) throws IOException {
+        return loadAndAnalyzeCsvCached(csvFile, null);
+    }
+
+    /**
+     * 加载CSV，优先使用.ruler快照；没有有效快照时渐进解析（见loadAndAnalyzeCsvProgressive）
+     *
+     * @param listener 渐进加载回调，为null时并行解析
+     */
+    public CsvData loadAndAnalyzeCsvCached(File csvFile, CsvLoadListener listener) throws IOException {
+        return loadAndAnalyzeCsvCached(csvFile, null, listener);
+    }
 
-        // 解析CSV数据
-        List<List<String>> allRows = new ArrayList<>();
-        for (String line : lines) {
-            if (!line.trim().isEmpty()) {
-                List<String> row = parseCsvLine(line);
-                allRows.add(row);
+    /**
+     * 加载选中的列，优先使用.ruler快照
+     * 快照保存的是完整数据，有选择时从快照中取出选中的列；只加载部分列的结果不写入快照
+     *
+     * @param selectedColumns 要加载的列，为null时加载全部列
+     * @param listener 渐进加载回调，为null时并行解析
+     */
+    public CsvData loadAndAnalyzeCsvCached(File csvFile, Collection<String> selectedColumns,
+                                           CsvLoadListener listener) throws IOException {
+        return loadAndAnalyzeCsvCached(csvFile, selectedColumns, listener, null);
+    }
+
+    /**
+     * 加载选中的列，优先使用.ruler快照（见上），解析和列分析阶段通过job报告进度并检查取消
+     * 取消时抛出CancellationException，已解析的部分立即释放，不写入快照
+     *
+     * @param job 导入任务，为null时不可取消
+     */
+    public CsvData loadAndAnalyzeCsvCached(File csvFile, Collection<String> selectedColumns,
+                                           CsvLoadListener listener, ImportJob job) throws IOException {
+        validateCsvFile(csvFile);
+
+        // 快照整体读入堆内，大文件（压缩文件按解压后的大小）只能解析到堆外存储
+        long snapshotSize = snapshotService.getSnapshotFile(csvFile).length();
+        if (!usesOffHeap(compressionDetector.estimateUncompressedSize(csvFile, null)) && !usesOffHeap(snapshotSize)) {
+            try {
+                CsvData snapshot = snapshotService.readSnapshot(csvFile, nullTokens);
+                if (snapshot != null) {
+                    return selectedColumns == null ? snapshot : selectColumns(snapshot, selectedColumns);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("读取快照失败，重新解析CSV: " + e.getMessage());
             }
         }
 
-        if (allRows.isEmpty()) {
-            throw new IllegalArgumentException("CSV文件没有有效数据");
+        // 指纹在解析前计算，解析期间文件被修改时快照会在下次打开时失效
+        long[] fingerprint = snapshotService.fingerprint(csvFile);
+        CsvData csvData = listener != null
+                ? loadProgressive(csvFile, selectedColumns, listener, job)
+                : loadParallel(csvFile, Runtime.getRuntime().availableProcessors(), selectedColumns, job);
+
+        // 堆外的结果不写入快照：写入时逐列读回堆上，恢复时也无法放回堆外
+        if (selectedColumns == null && csvData.getOffHeapStorage() == null) {
+            try {
+                snapshotService.writeSnapshot(csvFile, csvData, fingerprint);
+            } catch (IOException e) {
+                System.err.println("写入快照失败: " + e.getMessage());
+            }
         }
 
-        // 构建CsvData对象
-        return buildCsvData(allRows);
+        return csvData;
+    }
+
+    /**
+     * 并行加载大文件，并行度默认为CPU核数
+     */
+    public CsvData loadAndAnalyzeCsvParallel(File csvFile) throws IOException {
+        return loadAndAnalyzeCsvParallel(csvFile, Runtime.getRuntime().availableProcessors());
     }
 
     /**
-     * 读取输入流并尝试检测编码
+     * 并行加载大文件
+     * 文件通过FileChannel.map内存映射后切分为多个字节范围，按引号规则找到安全的记录边界，
+     * 在ForkJoin线程池上并行解析各段，再按原始顺序拼接行数据。
+     * 小文件或并行度为1时直接使用流式解析
      */
-    private String readStreamWithEncoding(InputStream inputStream) throws IOException {
-        byte[] bytes;
-        try (ByteArrayOutputStream buffer = new ByteArrayOutputStream()) {
-            byte[] data = new byte[1024];
-            int nRead;
-            while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, nRead);
+    public CsvData loadAndAnalyzeCsvParallel(File csvFile, int parallelism) throws IOException {
+        validateCsvFile(csvFile);
+        return loadParallel(csvFile, parallelism, null);
+    }
+
+    /**
+     * 并行加载选中的列（见loadAndAnalyzeCsvParallel）
+     */
+    private CsvData loadParallel(File csvFile, int parallelism, Collection<String> selectedColumns) throws IOException {
+        return loadParallel(csvFile, parallelism, selectedColumns, null);
+    }
+
+    /**
+     * 并行加载选中的列，job不为null时报告进度并检查取消
+     */
+    private CsvData loadParallel(File csvFile, int parallelism, Collection<String> selectedColumns,
+                                 ImportJob job) throws IOException {
+        // 压缩文件无法按字节范围切分，使用流式解压解析
+        if (parallelism <= 1 || csvFile.length() < PARALLEL_THRESHOLD
+                || compressionDetector.detect(csvFile) != CompressionDetector.Format.NONE) {
+            return loadStream(csvFile, null, selectedColumns, job);
+        }
+
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            FileHeader header = readFileHeader(channel, fileSize);
+            // 分段边界按字节查找引号和换行，引号可能出现在多字节字符内部时只能顺序解析
+            if (!CsvByteTokenizer.isSingleByte(header.charset, header.dialect.getQuote())) {
+                return loadStream(csvFile, header.charset, selectedColumns, job);
+            }
+            int[] fieldIndexes = resolveFieldIndexes(header.headers, selectedColumns);
+            List<String> headers = selectHeaders(header.headers, fieldIndexes);
+
+            OffHeapStorage storage = createStorage(fileSize);
+            try {
+                List<ColumnVector> columns = parseRange(channel, header.dataStart, fileSize,
+                        header.charset, header.dialect, headers, fieldIndexes, parallelism, storage, job);
+                CsvData csvData = buildCsvData(headers, columns, storage, job);
+                csvData.setFileName(csvFile.getName());
+                csvData.setCharset(header.charset);
+                csvData.setDialect(header.dialect);
+                return csvData;
+            } catch (IOException | RuntimeException e) {
+                closeStorage(storage);
+                throw e;
             }
-            bytes = buffer.toByteArray();
         }
+    }
 
-        // 检测BOM
-        if (bytes.length >= 3 &&
-                bytes[0] == (byte) 0xEF &&
-                bytes[1] == (byte) 0xBB &&
-                bytes[2] == (byte) 0xBF) {
-            // UTF-8 BOM
-            return new String(bytes, 3, bytes.length - 3, StandardCharsets.UTF_8);
+    /**
+     * 跟踪模式加载：只解析已完整写入的记录（到最后一个引号外的换行符为止），
+     * 并记录已解析到的字节位置，之后用readAppendedRecords()只解析新追加的部分
+     */
+    public CsvData loadForFollow(File csvFile) throws IOException {
+        return loadForFollow(csvFile, null);
+    }
+
+    /**
+     * 跟踪模式加载选中的列（见上），之后追加的记录也只解析这些列
+     *
+     * @param selectedColumns 要加载的列，为null时加载全部列
+     */
+    public CsvData loadForFollow(File csvFile, Collection<String> selectedColumns) throws IOException {
+        validateCsvFile(csvFile);
+        if (compressionDetector.detect(csvFile) != CompressionDetector.Format.NONE) {
+            throw new IllegalArgumentException("压缩文件不支持跟踪模式");
         }
 
-        // 尝试不同编码
-        String[] encodings = {"UTF-8", "GBK", "GB2312", "ISO-8859-1"};
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            FileHeader header = readFileHeader(channel, fileSize);
+            // 记录边界按字节查找，新记录按字节分词，结构字符不能出现在多字节字符内部
+            if (!CsvByteTokenizer.supports(header.charset, header.dialect)) {
+                throw new IllegalArgumentException("跟踪模式不支持该编码和分隔符的组合: "
+                        + header.charset.name() + ", '" + header.dialect.getDelimiter() + "'");
+            }
+
+            int[] fieldIndexes = resolveFieldIndexes(header.headers, selectedColumns);
+            List<String> headers = selectHeaders(header.headers, fieldIndexes);
 
-        for (String encoding : encodings) {
+            long committedEnd = findLastRecordEnd(channel, header.dataStart, fileSize, header.dialect);
+            OffHeapStorage storage = createStorage(committedEnd);
             try {
-                String content = new String(bytes, encoding);
-                // 简单检测：如果没有乱码字符，就使用这个编码
-                if (isValidEncoding(content)) {
-                    return content;
+                List<ColumnVector> columns = parseRange(channel, header.dataStart, committedEnd, header.charset,
+                        header.dialect, headers, fieldIndexes,
+                        Runtime.getRuntime().availableProcessors(), storage, null);
+                CsvData csvData = buildCsvData(headers, columns, storage, null);
+                csvData.setFileName(csvFile.getName());
+                csvData.setCharset(header.charset);
+                csvData.setDialect(header.dialect);
+                csvData.setCommittedOffset(committedEnd);
+                csvData.setFieldIndexes(fieldIndexes);
+                return csvData;
+            } catch (IOException | RuntimeException e) {
+                closeStorage(storage);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 读取跟踪文件中fromOffset之后新追加的完整记录，不修改csvData（可以在后台线程调用）
+     * 未写完的最后一条记录留到下次读取
+     *
+     * @param csvData 已加载的数据，提供标题、编码和要读取的字段位置
+     * @param fromOffset 上次读取到的字节位置（初始为csvData.getCommittedOffset()）
+     * @return 只包含新记录的CsvData，committedOffset为新的字节位置；没有新的完整记录时返回null
+     * @throws IllegalStateException 文件变短（被截断或替换），需要重新加载
+     */
+    public CsvData readAppendedRecords(File csvFile, CsvData csvData, long fromOffset) throws IOException {
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < fromOffset) {
+                throw new IllegalStateException("文件已被截断或替换，需要重新加载: " + csvFile.getName());
+            }
+
+            CsvDialect dialect = csvData.getDialect() != null ? csvData.getDialect() : CsvDialect.DEFAULT;
+            long committedEnd = findLastRecordEnd(channel, fromOffset, fileSize, dialect);
+            if (committedEnd == fromOffset) {
+                return null;
+            }
+
+            List<String> headers = csvData.getHeaders();
+            int[] fieldIndexes = csvData.getFieldIndexes() != null
+                    ? csvData.getFieldIndexes() : resolveFieldIndexes(headers, null);
+            List<ColumnVector> columns = parseRange(channel, fromOffset, committedEnd, csvData.getCharset(),
+                    dialect, headers, fieldIndexes, 1, null, null);
+
+            CsvData appended = new CsvData();
+            appended.setFileName(csvData.getFileName());
+            appended.setCharset(csvData.getCharset());
+            appended.setDialect(dialect);
+            appended.setHeaders(headers);
+            appended.setColumns(columns);
+            appended.setTotalRows(appended.getRowCount());
+            appended.setTotalColumns(headers.size());
+            appended.setCommittedOffset(committedEnd);
+            return appended;
+        }
+    }
+
+    /**
+     * 把readAppendedRecords()读到的新记录追加到已加载的数据
+     * 列概况和数值列的解码结果失效，在下次使用时重新计算。
+     * 追加期间csvData不能被其他线程读取；需要在后台追加时，界面显示copyOf()得到的副本（之前的副本不受追加影响）
+     *
+     * @return 第一条新记录的行号
+     */
+    public int appendRecords(CsvData csvData, CsvData appended) {
+        int fromRow = csvData.getRowCount();
+        for (String header : csvData.getHeaders()) {
+            csvData.getColumn(header).appendAll(appended.getColumn(header));
+        }
+        csvData.setColumnProfiles(new HashMap<>());
+        csvData.setTotalRows(csvData.getRowCount());
+        csvData.setCommittedOffset(appended.getCommittedOffset());
+        return fromRow;
+    }
+
+    /**
+     * 复制已加载的数据，之后对原数据的追加不影响副本
+     * 列的副本共享已写入的数据（见ColumnVector.copy()），不逐行复制，耗时只与列数有关；
+     * 堆外列的副本使用同一个堆外存储，由原数据和副本共同持有
+     */
+    public CsvData copyOf(CsvData csvData) {
+        List<ColumnVector> columns = new ArrayList<>(csvData.getColumns().size());
+        for (ColumnVector column : csvData.getColumns()) {
+            columns.add(column.copy());
+        }
+
+        CsvData copy = new CsvData();
+        copy.setFileName(csvData.getFileName());
+        copy.setCharset(csvData.getCharset());
+        copy.setDialect(csvData.getDialect());
+        copy.setHeaders(new ArrayList<>(csvData.getHeaders()));
+        copy.setColumns(columns);
+        copy.setColumnProfiles(new HashMap<>(csvData.getColumnProfiles()));
+        copy.setTotalRows(copy.getRowCount());
+        copy.setTotalColumns(csvData.getTotalColumns());
+        copy.setCommittedOffset(csvData.getCommittedOffset());
+        copy.setFieldIndexes(csvData.getFieldIndexes());
+        copy.setOffHeapStorage(csvData.getOffHeapStorage());
+        return copy;
+    }
+
+    /**
+     * 检测编码和方言并解析标题记录，得到数据区的起始位置
+     */
+    private FileHeader readFileHeader(FileChannel channel, long fileSize) throws IOException {
+        // 编码和方言检测只使用文件开头的样本
+        byte[] sample = new byte[(int) Math.min(ENCODING_SAMPLE_SIZE, fileSize)];
+        channel.map(FileChannel.MapMode.READ_ONLY, 0, sample.length).get(sample);
+        int bomLength = charsetDetector.utf8BomLength(sample, sample.length);
+        Charset charset = bomLength > 0
+                ? StandardCharsets.UTF_8
+                : charsetDetector.detect(sample, sample.length, sample.length == fileSize);
+        CsvDialect dialect = dialectDetector.detect(
+                new String(sample, bomLength, sample.length - bomLength, charset), sample.length == fileSize);
+
+        long recordStart = bomLength;
+        long dataStart = bomLength;
+        List<String> firstRecord = null;
+        while (firstRecord == null && dataStart < fileSize) {
+            recordStart = dataStart;
+            long recordEnd = findRecordEnd(channel, recordStart, fileSize, dialect);
+            byte[] recordBytes = new byte[(int) (recordEnd - recordStart)];
+            channel.map(FileChannel.MapMode.READ_ONLY, recordStart, recordBytes.length).get(recordBytes);
+            firstRecord = new CsvTokenizer(new StringReader(new String(recordBytes, charset)), dialect).nextRecord();
+            dataStart = recordEnd;
+        }
+
+        if (firstRecord == null) {
+            throw new IllegalArgumentException("CSV文件为空");
+        }
+        // 没有标题行时第一条记录也是数据
+        return new FileHeader(charset, dialect, buildHeaders(firstRecord, dialect),
+                dialect.hasHeader() ? dataStart : recordStart);
+    }
+
+    /**
+     * 解析[from, to)范围内的完整记录：切分为若干段并行解析，再按顺序拼接各段的列向量
+     */
+    private List<ColumnVector> parseRange(FileChannel channel, long from, long to, Charset charset,
+                                          CsvDialect dialect, List<String> headers, int[] fieldIndexes,
+                                          int parallelism, OffHeapStorage storage,
+                                          ImportJob job) throws IOException {
+        if (from >= to) {
+            return createColumns(headers, storage);
+        }
+        // 少量数据（例如跟踪模式下新追加的记录）直接解析，不创建线程池
+        if (parallelism <= 1 && to - from <= MAX_CHUNK_SIZE && storage == null) {
+            return parseChunk(channel, from, to, charset, dialect, headers, fieldIndexes, job);
+        }
+
+        // 各段在堆内解析，按顺序拼接到结果列后丢弃；在途的段不超过线程数+1，
+        // 堆外时堆上最多只有这些段（解析中的和等待拼接的）
+        List<ColumnVector> columns = createColumns(headers, storage);
+        int threads = Math.max(1, parallelism);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long[] boundaries = findRecordBoundaries(channel, pool, from, to, dialect, threads);
+            for (int i = 0; i < boundaries.length - 1; i++) {
+                if (boundaries[i + 1] - boundaries[i] > Integer.MAX_VALUE) {
+                    throw new IOException("单条记录跨度过大，无法映射: " + boundaries[i] + "-" + boundaries[i + 1]);
                 }
-            } catch (Exception e) {
-                // 继续尝试下一个编码
             }
+
+            ArrayDeque<ForkJoinTask<List<ColumnVector>>> pending = new ArrayDeque<>();
+            int maxPending = threads + 1;
+            int nextChunk = 0;
+            for (int chunk = 0; chunk < boundaries.length - 1; chunk++) {
+                // 提交后续的段，直到在途的段达到上限
+                while (nextChunk < boundaries.length - 1 && pending.size() < maxPending) {
+                    long chunkFrom = boundaries[nextChunk];
+                    long chunkTo = boundaries[nextChunk + 1];
+                    pending.add(pool.submit(() -> parseChunk(channel, chunkFrom, chunkTo, charset, dialect,
+                            headers, fieldIndexes, job)));
+                    nextChunk++;
+                }
+
+                // 等待最早的一段并拼接，拼接后不再持有该段；每拼接一段报告一次进度
+                List<ColumnVector> chunkColumns = join(pending.poll());
+                for (int i = 0; i < columns.size(); i++) {
+                    columns.get(i).appendAll(chunkColumns.get(i));
+                }
+                if (job != null) {
+                    job.progress(ImportJob.Stage.PARSE, boundaries[chunk + 1] - from, to - from);
+                }
+            }
+            return columns;
+        } finally {
+            // 取消或失败时丢弃尚未开始的段
+            pool.shutdownNow();
         }
+    }
 
-        // 默认使用UTF-8
-        return new String(bytes, StandardCharsets.UTF_8);
+    /**
+     * 查找[from, to)中最后一条完整记录的结束位置（from必须是记录边界，记录结束规则见endsRecord）；
+     * 没有完整记录时返回from。
+     * 末尾的CR按记录结束处理：之后追加的LF在下次读取时是一个空白行，分词时跳过
+     */
+    private long findLastRecordEnd(FileChannel channel, long from, long to, CsvDialect dialect) throws IOException {
+        byte quote = (byte) dialect.getQuote();
+        long lastEnd = from;
+        long position = from;
+        boolean inQuotes = false;
+        while (position < to) {
+            long length = Math.min(MAX_CHUNK_SIZE, to - position);
+            // 多映射一个字节，用来判断窗口末尾的CR是否属于CRLF
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(length + 1, to - position));
+            for (int i = 0; i < length; i++) {
+                byte b = buffer.get(i);
+                if (b == quote) {
+                    inQuotes = !inQuotes;
+                } else if (!inQuotes && endsRecord(buffer, i)) {
+                    lastEnd = position + i + 1;
+                }
+            }
+            position += length;
+        }
+        return lastEnd;
     }
 
     /**
-     * 简单检测编码是否有效
+     * 把数据区切分为若干字节范围，返回按引号规则修正后的记录边界（含首尾）
+     * 每个范围并行统计引号数量，同时分别记录"起点在引号外/引号内"两种情况下第一个记录结束的位置（见endsRecord）；
+     * 再按范围顺序累积引号奇偶性，选出每个范围真正的边界。
+     * 转义引号""成对出现，不影响奇偶性，与CsvTokenizer的引号规则一致
      */
-    private boolean isValidEncoding(String content) {
-        // 检测是否包含常见的乱码字符
-        return !content.contains("�") &&
-                !content.contains("锘�") &&
-                content.length() > 0;
+    private long[] findRecordBoundaries(FileChannel channel, ForkJoinPool pool, long dataStart, long fileSize,
+                                        CsvDialect dialect, int parallelism) throws IOException {
+        long dataLength = fileSize - dataStart;
+        int chunkCount = (int) Math.max((long) parallelism * 4, (dataLength + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+        long chunkSize = (dataLength + chunkCount - 1) / chunkCount;
+
+        List<ForkJoinTask<long[]>> scanTasks = new ArrayList<>();
+        for (long start = dataStart; start < fileSize; start += chunkSize) {
+            long from = start;
+            long to = Math.min(fileSize, start + chunkSize);
+            scanTasks.add(pool.submit(() -> scanChunkQuotes(channel, from, to, fileSize, (byte) dialect.getQuote())));
+        }
+        List<long[]> scans = joinAll(scanTasks);
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(dataStart);
+        boolean inQuotes = false;
+        for (int i = 0; i < scans.size(); i++) {
+            long[] scan = scans.get(i);
+            // 第一个范围从数据区起点开始，不需要寻找边界
+            if (i > 0) {
+                long boundary = inQuotes ? scan[2] : scan[1];
+                if (boundary >= 0 && boundary < fileSize) {
+                    boundaries.add(boundary);
+                }
+            }
+            if ((scan[0] & 1) == 1) {
+                inQuotes = !inQuotes;
+            }
+        }
+        boundaries.add(fileSize);
+
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
     }
 
     /**
-     * 解析CSV行
+     * 扫描一个字节范围
+     * 返回 {引号数量, 起点在引号外时第一个记录结束位置, 起点在引号内时第一个记录结束位置}，未找到为-1
+     * 多映射范围后的一个字节，用来判断范围末尾的CR是否属于CRLF
      */
-    private List<String> parseCsvLine(String line) {
-        List<String> result = new ArrayList<>();
+    private long[] scanChunkQuotes(FileChannel channel, long from, long to, long fileSize,
+                                   byte quote) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(to + 1, fileSize) - from);
+        int length = (int) (to - from);
+        long quoteCount = 0;
+        long endIfOutside = -1;
+        long endIfInside = -1;
+
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(i);
+            if (b == quote) {
+                quoteCount++;
+            } else if (endsRecord(buffer, i)) {
+                // 已统计的引号为偶数时，起点状态即当前状态
+                boolean evenQuotes = (quoteCount & 1) == 0;
+                if (evenQuotes && endIfOutside < 0) {
+                    endIfOutside = from + i + 1;
+                } else if (!evenQuotes && endIfInside < 0) {
+                    endIfInside = from + i + 1;
+                }
+            }
+        }
 
-        // 处理空行
-        if (line.trim().isEmpty()) {
-            return result;
+        return new long[]{quoteCount, endIfOutside, endIfInside};
+    }
+
+    /**
+     * 解析一段完整记录，生成该段的列向量
+     */
+    private List<ColumnVector> parseChunk(FileChannel channel, long from, long to, Charset charset,
+                                          CsvDialect dialect, List<String> headers,
+                                          int[] fieldIndexes, ImportJob job) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        InputStream input = new ByteBufferInputStream(buffer);
+
+        List<ColumnVector> columns = createColumns(headers);
+        int records = 0;
+        if (CsvByteTokenizer.supports(charset, dialect)) {
+            CsvByteTokenizer tokenizer = new CsvByteTokenizer(input, charset, dialect);
+            List<ValueDeduplicator> deduplicators = createDeduplicators(headers.size(), charset);
+            while (tokenizer.nextRecord()) {
+                appendRecord(columns, tokenizer, deduplicators, fieldIndexes);
+                if (job != null && ++records % ImportJob.CANCEL_CHECK_INTERVAL_ROWS == 0) {
+                    job.checkCancelled();
+                }
+            }
+        } else {
+            CsvTokenizer tokenizer = new CsvTokenizer(new InputStreamReader(input, charset), dialect);
+            List<String> record;
+            while ((record = tokenizer.nextRecord()) != null) {
+                appendRecord(columns, record, fieldIndexes);
+                if (job != null && ++records % ImportJob.CANCEL_CHECK_INTERVAL_ROWS == 0) {
+                    job.checkCancelled();
+                }
+            }
         }
+        return columns;
+    }
 
-        // 简单的CSV解析（处理引号和逗号）
+    /**
+     * 查找从指定位置开始的记录结束位置（引号外的换行符之后，见endsRecord）
+     */
+    private long findRecordEnd(FileChannel channel, long from, long fileSize, CsvDialect dialect) throws IOException {
+        byte quote = (byte) dialect.getQuote();
+        long position = from;
         boolean inQuotes = false;
-        StringBuilder currentField = new StringBuilder();
-
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-
-            if (c == '"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    // 转义的引号
-                    currentField.append('"');
-                    i++; // 跳过下一个引号
-                } else {
-                    // 切换引号状态
+        while (position < fileSize) {
+            long length = Math.min(MAX_CHUNK_SIZE, fileSize - position);
+            // 多映射一个字节，用来判断窗口末尾的CR是否属于CRLF
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(length + 1, fileSize - position));
+            for (int i = 0; i < length; i++) {
+                byte b = buffer.get(i);
+                if (b == quote) {
                     inQuotes = !inQuotes;
+                } else if (!inQuotes && endsRecord(buffer, i)) {
+                    return position + i + 1;
                 }
-            } else if (c == ',' && !inQuotes) {
-                // 字段分隔符
-                result.add(currentField.toString().trim());
-                currentField.setLength(0);
-            } else {
-                currentField.append(c);
             }
+            position += length;
         }
+        return fileSize;
+    }
 
-        // 添加最后一个字段
-        result.add(currentField.toString().trim());
+    /**
+     * 下标i处的字节是否结束一条记录：LF，或后面不是LF的CR（与分词器一致，支持LF、CRLF和单独的CR）
+     * CRLF在LF之后结束；CR是缓冲区最后一个字节时按记录结束处理
+     */
+    private static boolean endsRecord(ByteBuffer buffer, int i) {
+        byte b = buffer.get(i);
+        return b == '\n' || (b == '\r' && (i + 1 >= buffer.limit() || buffer.get(i + 1) != '\n'));
+    }
 
-        return result;
+    /**
+     * 按提交顺序等待所有任务完成，解包任务中的IO异常
+     */
+    private <T> List<T> joinAll(List<ForkJoinTask<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<T> task : tasks) {
+            results.add(join(task));
+        }
+        return results;
     }
 
     /**
-     * 构建CsvData对象
+     * 等待任务完成，解包任务中的IO异常
      */
-    private CsvData buildCsvData(List<List<String>> allRows) {
-        if (allRows.isEmpty()) {
-            throw new IllegalArgumentException("没有数据行");
+    private <T> T join(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("并行解析被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("并行解析失败", cause);
         }
+    }
+
+    /**
+     * 校验CSV文件（.csv文件，或按魔数识别的gzip/zip压缩文件）
+     */
+    private void validateCsvFile(File csvFile) throws IOException {
+        if (!csvFile.exists()) {
+            throw new FileNotFoundException("CSV文件不存在: " + csvFile.getAbsolutePath());
+        }
+
+        if (!csvFile.getName().toLowerCase().endsWith(".csv")
+                && compressionDetector.detect(csvFile) == CompressionDetector.Format.NONE) {
+            throw new IllegalArgumentException("文件必须是CSV格式（或gzip/zip压缩的CSV）");
+        }
+    }
+
+    /**
+     * 确定输入流的编码
+     * 只读取开头的一段样本（mark/reset，不消费数据）；有UTF-8 BOM时跳过BOM
+     */
+    private Charset resolveCharset(BufferedInputStream input, Charset knownCharset) throws IOException {
+        input.mark(ENCODING_SAMPLE_SIZE);
+        byte[] sample = input.readNBytes(ENCODING_SAMPLE_SIZE);
+        input.reset();
+
+        int bomLength = charsetDetector.utf8BomLength(sample, sample.length);
+        if (bomLength > 0) {
+            input.skipNBytes(bomLength);
+            return StandardCharsets.UTF_8;
+        }
+
+        if (knownCharset != null) {
+            return knownCharset;
+        }
+
+        return charsetDetector.detect(sample, sample.length, sample.length < ENCODING_SAMPLE_SIZE);
+    }
 
-        // 第一行作为标题
-        List<String> headers = new ArrayList<>(allRows.get(0));
+    /**
+     * 检测输入流的方言，与编码检测一样只读取开头的一段样本（mark/reset，不消费数据）
+     */
+    private CsvDialect resolveDialect(BufferedInputStream input, Charset charset) throws IOException {
+        input.mark(ENCODING_SAMPLE_SIZE);
+        byte[] sample = input.readNBytes(ENCODING_SAMPLE_SIZE);
+        input.reset();
+
+        return dialectDetector.detect(new String(sample, charset), sample.length < ENCODING_SAMPLE_SIZE);
+    }
+
+    /**
+     * 由第一条记录构建标题；没有标题行时按字段数生成Column_1、Column_2...
+     */
+    private List<String> buildHeaders(List<String> firstRecord, CsvDialect dialect) {
+        return buildHeaders(dialect.hasHeader() ? firstRecord : Collections.nCopies(firstRecord.size(), ""));
+    }
+
+    /**
+     * 构建标题行（处理空标题和同名列），标题已由分词器去除引号和首尾空白
+     */
+    private List<String> buildHeaders(List<String> rawHeaders) {
+        List<String> headers = new ArrayList<>(rawHeaders);
 
-        // 清理标题（移除引号，处理空标题和同名列）
         Map<String, Integer> headerCount = new HashMap<>();
         for (int i = 0; i < headers.size(); i++) {
             String header = headers.get(i);
             if (header.isEmpty()) {
                 header = "Column_" + (i + 1);
             }
-            header = cleanField(header);
 
             // 处理同名列：如果列名已存在，添加后缀
             String originalHeader = header;
@@ -202,63 +946,253 @@ public class CsvParsingService {
             headers.set(i, header);
         }
 
-        // 处理数据行
-        List<Map<String, String>> rows = new ArrayList<>();
+        return headers;
+    }
 
-        for (int rowIndex = 1; rowIndex < allRows.size(); rowIndex++) {
-            List<String> rowData = allRows.get(rowIndex);
+    /**
+     * 为每个标题创建列向量
+     */
+    private List<ColumnVector> createColumns(List<String> headers) {
+        return createColumns(headers, null);
+    }
 
-            // 跳过空行
-            if (rowData.stream().allMatch(String::isEmpty)) {
-                continue;
-            }
+    /**
+     * 为每个标题创建列向量
+     *
+     * @param storage 堆外存储，为null时列保存在堆内
+     */
+    private List<ColumnVector> createColumns(List<String> headers, OffHeapStorage storage) {
+        List<ColumnVector> columns = new ArrayList<>(headers.size());
+        for (String header : headers) {
+            columns.add(new ColumnVector(header, storage, nullTokens));
+        }
+        return columns;
+    }
+
+    /**
+     * 数据大小（压缩文件为估算的解压后大小，见CompressionDetector.estimateUncompressedSize）达到堆外阈值时
+     * 创建堆外存储，否则返回null；创建失败时退回堆内存储
+     */
+    private OffHeapStorage createStorage(long dataSize) {
+        if (!usesOffHeap(dataSize)) {
+            return null;
+        }
+        try {
+            return OffHeapStorage.create();
+        } catch (IOException e) {
+            System.err.println("创建堆外存储失败，使用堆内存储: " + e.getMessage());
+            return null;
+        }
+    }
 
-            Map<String, String> rowMap = new LinkedHashMap<>();
+    private void closeStorage(OffHeapStorage storage) {
+        if (storage == null) {
+            return;
+        }
+        try {
+            storage.close();
+        } catch (IOException e) {
+            System.err.println("关闭堆外存储失败: " + e.getMessage());
+        }
+    }
 
-            for (int colIndex = 0; colIndex < headers.size(); colIndex++) {
-                String header = headers.get(colIndex);
-                String value = "";
+    /**
+     * 释放数据的堆外存储（替换或丢弃已加载的数据时调用，之后不能再读取该数据）
+     */
+    public void release(CsvData csvData) {
+        if (csvData != null) {
+            closeStorage(csvData.getOffHeapStorage());
+            csvData.setOffHeapStorage(null);
+        }
+    }
 
-                if (colIndex < rowData.size()) {
-                    value = cleanField(rowData.get(colIndex));
-                }
+    private boolean usesOffHeap(long bytes) {
+        return bytes >= offHeapThreshold;
+    }
+
+    /**
+     * 设置堆外存储的阈值：文件大小（压缩文件为解压后的大小）达到该值时列数据保存在堆外，0表示总是使用堆外存储
+     */
+    public void setOffHeapThreshold(long offHeapThreshold) {
+        if (offHeapThreshold < 0) {
+            throw new IllegalArgumentException("堆外存储阈值不能为负数: " + offHeapThreshold);
+        }
+        this.offHeapThreshold = offHeapThreshold;
+    }
+
+    /**
+     * 设置空值标记，之后加载的文件生效
+     */
+    public void setNullTokens(NullTokenSet nullTokens) {
+        if (nullTokens == null) {
+            throw new IllegalArgumentException("空值标记不能为空");
+        }
+        this.nullTokens = nullTokens;
+    }
+
+    public NullTokenSet getNullTokens() { return nullTokens; }
+
+    /**
+     * 根据选中的列名得到要读取的字段位置（按文件中的顺序），未选择时为全部字段
+     */
+    private int[] resolveFieldIndexes(List<String> headers, Collection<String> selectedColumns) {
+        if (selectedColumns == null) {
+            int[] all = new int[headers.size()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
 
-                rowMap.put(header, value);
+        Set<String> selected = new HashSet<>(selectedColumns);
+        for (String columnName : selected) {
+            if (!headers.contains(columnName)) {
+                throw new IllegalArgumentException("列不存在: " + columnName);
             }
+        }
+        if (selected.isEmpty()) {
+            throw new IllegalArgumentException("至少需要选择一列");
+        }
 
-            rows.add(rowMap);
+        int[] fieldIndexes = new int[selected.size()];
+        int count = 0;
+        for (int i = 0; i < headers.size(); i++) {
+            if (selected.contains(headers.get(i))) {
+                fieldIndexes[count++] = i;
+            }
         }
+        return fieldIndexes;
+    }
 
-        // 创建CsvData对象
-        CsvData csvData = new CsvData();
-        csvData.setHeaders(headers);
-        csvData.setRows(rows);
-        csvData.setTotalRows(rows.size());
-        csvData.setTotalColumns(headers.size());
+    private List<String> selectHeaders(List<String> headers, int[] fieldIndexes) {
+        List<String> selected = new ArrayList<>(fieldIndexes.length);
+        for (int fieldIndex : fieldIndexes) {
+            selected.add(headers.get(fieldIndex));
+        }
+        return selected;
+    }
 
-        return csvData;
+    /**
+     * 从已加载的数据中取出选中的列（共享列向量和列概况，不复制数据）
+     */
+    private CsvData selectColumns(CsvData csvData, Collection<String> selectedColumns) {
+        List<String> headers = selectHeaders(csvData.getHeaders(),
+                resolveFieldIndexes(csvData.getHeaders(), selectedColumns));
+
+        List<ColumnVector> columns = new ArrayList<>(headers.size());
+        Map<String, ColumnProfile> profiles = new LinkedHashMap<>();
+        for (String header : headers) {
+            columns.add(csvData.getColumn(header));
+            profiles.put(header, csvData.getColumnProfile(header));
+        }
+
+        CsvData selected = new CsvData();
+        selected.setFileName(csvData.getFileName());
+        selected.setCharset(csvData.getCharset());
+        selected.setDialect(csvData.getDialect());
+        selected.setOffHeapStorage(csvData.getOffHeapStorage());
+        selected.setHeaders(headers);
+        selected.setColumns(columns);
+        selected.setColumnProfiles(profiles);
+        selected.setTotalRows(csvData.getTotalRows());
+        selected.setTotalColumns(headers.size());
+        return selected;
+    }
+
+    /**
+     * 把一条记录中选中的字段追加到列向量，空行跳过
+     * 字段已由分词器按方言的引号字符去除引号和转义并去除首尾空白，原样追加
+     *
+     * @param fieldIndexes 每个列向量对应的字段位置
+     */
+    private void appendRecord(List<ColumnVector> columns, List<String> rowData, int[] fieldIndexes) {
+        // 跳过空行
+        if (rowData.stream().allMatch(String::isEmpty)) {
+            return;
+        }
+
+        for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
+            String value = "";
+            int fieldIndex = fieldIndexes[colIndex];
+
+            if (fieldIndex < rowData.size()) {
+                value = rowData.get(fieldIndex);
+            }
+
+            columns.get(colIndex).append(value);
+        }
     }
 
     /**
-     * 清理字段内容（移除引号，处理转义字符）
+     * 为每一列创建去重缓存
      */
-    private String cleanField(String field) {
-        if (field == null) {
-            return "";
+    private List<ValueDeduplicator> createDeduplicators(int columnCount, Charset charset) {
+        List<ValueDeduplicator> deduplicators = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            deduplicators.add(new ValueDeduplicator(charset));
         }
+        return deduplicators;
+    }
 
-        String cleaned = field.trim();
+    /**
+     * 把字节级分词器当前记录中选中的字段追加到列向量，空行跳过
+     * 空行判断直接在字节上进行，不生成字符串；未选中的字段只记录了位置，不会生成字符串；
+     * 重复的值通过每列的去重缓存共享同一个实例
+     *
+     * @param fieldIndexes 每个列向量对应的字段位置
+     */
+    private void appendRecord(List<ColumnVector> columns, CsvByteTokenizer tokenizer,
+                              List<ValueDeduplicator> deduplicators, int[] fieldIndexes) {
+        int fieldCount = tokenizer.getFieldCount();
+
+        // 跳过空行
+        boolean allEmpty = true;
+        for (int i = 0; i < fieldCount && allEmpty; i++) {
+            allEmpty = tokenizer.isEmpty(i);
+        }
+        if (allEmpty) {
+            return;
+        }
+
+        for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
+            String value = "";
+            int fieldIndex = fieldIndexes[colIndex];
 
-        // 移除首尾引号
-        if (cleaned.length() >= 2 &&
-                cleaned.startsWith("\"") &&
-                cleaned.endsWith("\"")) {
-            cleaned = cleaned.substring(1, cleaned.length() - 1);
-            // 处理转义的引号
-            cleaned = cleaned.replace("\"\"", "\"");
+            if (fieldIndex < fieldCount) {
+                value = tokenizer.getString(fieldIndex, deduplicators.get(colIndex));
+            }
+
+            columns.get(colIndex).append(value);
         }
+    }
 
-        return cleaned;
+    /**
+     * 构建CsvData对象
+     *
+     * @param storage 列数据的堆外存储，由结果持有
+     * @param job 导入任务，不为null时逐列报告列分析进度并检查取消
+     */
+    private CsvData buildCsvData(List<String> headers, List<ColumnVector> columns, OffHeapStorage storage,
+                                 ImportJob job) {
+        for (ColumnVector column : columns) {
+            column.trimToSize();
+        }
+
+        CsvData csvData = new CsvData();
+        csvData.setHeaders(headers);
+        csvData.setColumns(columns);
+        csvData.setOffHeapStorage(storage);
+        csvData.setTotalRows(csvData.getRowCount());
+        csvData.setTotalColumns(headers.size());
+        // 加载时一次性分析各列，供各个服务复用
+        csvData.setColumnProfiles(columnProfiler.profileAll(columns, job));
+        // 数值列一次性解码为double数组
+        dataNormalizationService.attachNumericColumns(csvData);
+        if (job != null) {
+            job.checkCancelled();
+        }
+
+        return csvData;
     }
 
     /**
@@ -272,10 +1206,10 @@ public class CsvParsingService {
         }
 
         int columnIndex = csvData.getHeaders().indexOf(columnName);
+        ColumnVector column = csvData.getColumn(columnName);
 
-        for (int rowIndex = 0; rowIndex < csvData.getRows().size(); rowIndex++) {
-            Map<String, String> row = csvData.getRows().get(rowIndex);
-            String value = row.get(columnName);
+        for (int rowIndex = 0; rowIndex < column.size(); rowIndex++) {
+            String value = column.get(rowIndex);
 
             if (value != null && !value.trim().isEmpty()) {
                 dataPoints.add(new DataPoint(value.trim(), rowIndex, columnIndex));
@@ -287,6 +1221,7 @@ public class CsvParsingService {
 
     /**
      * 获取CSV数据的基本统计信息
+     * 类型和非空数来自加载时计算的列概况，不再逐列重新扫描
      */
     public Map<String, Object> getDataSummary(CsvData csvData) {
         Map<String, Object> summary = new HashMap<>();
@@ -296,176 +1231,220 @@ public class CsvParsingService {
         summary.put("totalColumns", csvData.getTotalColumns());
         summary.put("headers", csvData.getHeaders());
 
-        // 每列的数据类型检测
+        // 没有列概况（例如按行构建的CsvData）时补充计算
+        if (csvData.getColumnProfiles().isEmpty()) {
+            csvData.setColumnProfiles(columnProfiler.profileAll(csvData.getColumns()));
+        }
+
+        // 每列的数据类型
         Map<String, String> columnTypes = new HashMap<>();
         Map<String, Integer> nonEmptyCount = new HashMap<>();
+        Map<String, ColumnProfile> columnProfiles = new HashMap<>();
 
         for (String header : csvData.getHeaders()) {
-            List<DataPoint> dataPoints = getColumnDataPoints(csvData, header);
-            nonEmptyCount.put(header, dataPoints.size());
-            columnTypes.put(header, detectColumnType(dataPoints));
+            ColumnProfile profile = csvData.getColumnProfile(header);
+            if (profile == null) {
+                throw new IllegalArgumentException("列不存在: " + header);
+            }
+            nonEmptyCount.put(header, profile.getNonEmptyCount());
+            columnTypes.put(header, profile.getType());
+            columnProfiles.put(header, profile);
         }
 
         summary.put("columnTypes", columnTypes);
         summary.put("nonEmptyCount", nonEmptyCount);
+        summary.put("columnProfiles", columnProfiles);
 
         return summary;
     }
 
     /**
-     * 检测列的数据类型
+     * 导出CSV数据到文件
      */
-    private String detectColumnType(List<DataPoint> dataPoints) {
-        if (dataPoints.isEmpty()) {
-            return "EMPTY";
-        }
-
-        int numericCount = 0;
-        int dateCount = 0;
-        int totalCount = dataPoints.size();
+    public void exportCsvData(CsvData csvData, String filePath) throws IOException {
+        exportCsvData(csvData, new File(filePath));
+    }
 
-        for (DataPoint dp : dataPoints) {
-            String value = dp.getValue().trim();
+    /**
+     * 导出CSV数据到文件（见CsvExportService），文件名以.gz结尾时输出gzip压缩的CSV
+     */
+    public void exportCsvData(CsvData csvData, File file) throws IOException {
+        exportService.export(csvData, file);
+    }
 
-            if (isNumeric(value)) {
-                numericCount++;
-            }
+    /**
+     * 验证CSV数据的完整性
+     */
+    public boolean validateCsvData(CsvData csvData) {
+        if (csvData == null) {
+            return false;
+        }
 
-            if (isDate(value)) {
-                dateCount++;
-            }
+        if (csvData.getHeaders() == null || csvData.getHeaders().isEmpty()) {
+            return false;
         }
 
-        // 如果80%以上是数字，认为是数值型
-        if (numericCount > totalCount * 0.8) {
-            return "NUMERIC";
+        if (csvData.getColumns() == null) {
+            return false;
         }
 
-        // 如果80%以上是日期，认为是日期型
-        if (dateCount > totalCount * 0.8) {
-            return "DATE";
+        // 检查每个标题都有对应的列，且各列行数一致
+        int expectedRows = csvData.getRowCount();
+        for (String header : csvData.getHeaders()) {
+            ColumnVector column = csvData.getColumn(header);
+            if (column == null || column.size() != expectedRows) {
+                return false;
+            }
         }
 
-        return "TEXT";
+        return true;
     }
 
     /**
-     * 检测是否为数值
+     * 文件的编码、方言、标题和数据区起始位置
      */
-    private boolean isNumeric(String str) {
-        try {
-            Double.parseDouble(str);
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
+    private static class FileHeader {
+        private final Charset charset;
+        private final CsvDialect dialect;
+        private final List<String> headers;
+        private final long dataStart;
+
+        FileHeader(Charset charset, CsvDialect dialect, List<String> headers, long dataStart) {
+            this.charset = charset;
+            this.dialect = dialect;
+            this.headers = headers;
+            this.dataStart = dataStart;
         }
     }
 
     /**
-     * 检测是否为日期
+     * 以InputStream方式读取ByteBuffer（用于内存映射的文件段）
      */
-    private boolean isDate(String str) {
-        // 简单的日期格式检测
-        String[] datePatterns = {
-                "\\d{4}-\\d{2}-\\d{2}",           // 2023-12-25
-                "\\d{2}/\\d{2}/\\d{4}",           // 12/25/2023
-                "\\d{4}/\\d{2}/\\d{2}",           // 2023/12/25
-                "\\d{2}-\\d{2}-\\d{4}",           // 25-12-2023
-        };
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
 
-        for (String pattern : datePatterns) {
-            if (str.matches(pattern)) {
-                return true;
-            }
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
         }
 
-        return false;
-    }
-
-    /**
-     * 导出CSV数据到文件
-     */
-    public void exportCsvData(CsvData csvData, String filePath) throws IOException {
-        exportCsvData(csvData, new File(filePath));
-    }
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
 
-    /**
-     * 导出CSV数据到文件
-     */
-    public void exportCsvData(CsvData csvData, File file) throws IOException {
-        try (PrintWriter writer = new PrintWriter(
-                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
-
-            // 写入BOM以确保Excel正确识别UTF-8
-            writer.write('\ufeff');
-
-            // 写入标题行
-            writer.println(String.join(",",
-                    csvData.getHeaders().stream()
-                            .map(this::escapeCsvField)
-                            .toArray(String[]::new)));
-
-            // 写入数据行
-            for (Map<String, String> row : csvData.getRows()) {
-                List<String> values = new ArrayList<>();
-                for (String header : csvData.getHeaders()) {
-                    String value = row.getOrDefault(header, "");
-                    values.add(escapeCsvField(value));
-                }
-                writer.println(String.join(",", values));
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
             }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
         }
     }
 
     /**
-     * 转义CSV字段（处理逗号、引号、换行符）
+     * 流式解析的进度跟踪：按行间隔回调进度并检查导入任务是否已取消，按几何增长的行数生成预览
+     * listener和job都可以为null
      */
-    private String escapeCsvField(String field) {
-        if (field == null) {
-            return "";
+    private class LoadProgress {
+        private final CsvLoadListener listener;
+        private final ImportJob job;
+        private final CountingInputStream input;
+        private final long totalBytes;
+        private int nextPreviewRows = PREVIEW_ROWS;
+        private int nextProgressRows = PROGRESS_INTERVAL_ROWS;
+        private int nextCancelCheckRows = ImportJob.CANCEL_CHECK_INTERVAL_ROWS;
+
+        LoadProgress(CsvLoadListener listener, ImportJob job, CountingInputStream input, long totalBytes) {
+            this.listener = listener;
+            this.job = job;
+            this.input = input;
+            this.totalBytes = totalBytes;
         }
 
-        // 如果包含逗号、引号或换行符，需要用引号包围
-        if (field.contains(",") || field.contains("\"") || field.contains("\n") || field.contains("\r")) {
-            // 转义内部的引号
-            String escaped = field.replace("\"", "\"\"");
-            return "\"" + escaped + "\"";
+        void recordParsed(List<String> headers, List<ColumnVector> columns) {
+            int rows = columns.isEmpty() ? 0 : columns.get(0).size();
+
+            if (job != null && rows >= nextCancelCheckRows) {
+                nextCancelCheckRows = rows + ImportJob.CANCEL_CHECK_INTERVAL_ROWS;
+                job.checkCancelled();
+            }
+
+            if (rows >= nextProgressRows) {
+                nextProgressRows = rows + PROGRESS_INTERVAL_ROWS;
+                if (listener != null) {
+                    listener.onProgress(input.getCount(), totalBytes, rows);
+                }
+                if (job != null) {
+                    job.progress(ImportJob.Stage.PARSE, input.getCount(), totalBytes);
+                }
+            }
+
+            if (listener != null && rows >= nextPreviewRows) {
+                nextPreviewRows = (int) Math.min(Integer.MAX_VALUE, (long) rows * PREVIEW_GROWTH_FACTOR);
+                boolean offHeap = !columns.isEmpty() && columns.get(0).getStorage() != null;
+                if (offHeap && rows > OFF_HEAP_PREVIEW_MAX_ROWS) {
+                    return;
+                }
+
+                // 复制当前已解析的部分，解析线程继续追加不影响预览；
+                // 堆外列复制到堆内，取消或失败时关闭存储不影响已交出的预览
+                List<ColumnVector> copies = new ArrayList<>(columns.size());
+                for (ColumnVector column : columns) {
+                    copies.add(column.copyOnHeap());
+                }
+                listener.onPreview(buildCsvData(new ArrayList<>(headers), copies, null, null));
+            }
         }
 
-        return field;
+        void finish(int rows) {
+            if (listener != null) {
+                listener.onProgress(input.getCount(), totalBytes, rows);
+            }
+        }
     }
 
     /**
-     * 验证CSV数据的完整性
+     * 统计已读取字节数的输入流
      */
-    public boolean validateCsvData(CsvData csvData) {
-        if (csvData == null) {
-            return false;
-        }
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
 
-        if (csvData.getHeaders() == null || csvData.getHeaders().isEmpty()) {
-            return false;
+        CountingInputStream(InputStream input) {
+            super(input);
         }
 
-        if (csvData.getRows() == null) {
-            return false;
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
         }
 
-        // 检查每行数据的列数是否与标题一致
-        int expectedColumns = csvData.getHeaders().size();
-        for (Map<String, String> row : csvData.getRows()) {
-            if (row.size() != expectedColumns) {
-                return false;
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
             }
+            return n;
+        }
 
-            // 检查是否包含所有标题对应的键
-            for (String header : csvData.getHeaders()) {
-                if (!row.containsKey(header)) {
-                    return false;
-                }
-            }
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
         }
 
-        return true;
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        long getCount() { return count; }
     }
 }
@@ -0,0 +1,324 @@
+package com.example.rulerDesktop.service;
+
+import com.example.rulerDesktop.model.ColumnProfile;
+import com.example.rulerDesktop.model.ColumnVector;
+import com.example.rulerDesktop.model.CsvData;
+import com.example.rulerDesktop.model.CsvDialect;
+import com.example.rulerDesktop.model.NullTokenSet;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * CSV快照服务类
+ * 第一次加载后在CSV旁边写入一个.ruler二进制快照（列数据、字典、列概况和源文件指纹），
+ * 再次打开同一文件时直接读取快照恢复CsvData，跳过编码检测和分词。
+ * 源文件的大小、修改时间或抽样校验和变化时快照自动失效。
+ * 快照恢复为堆内的列，只用于不需要堆外存储的文件（见CsvParsingService.loadAndAnalyzeCsvCached）。
+ *
+ * 文件布局（大端）：
+ * 魔数、版本、指纹(大小, 修改时间, 抽样CRC32)、字符集、方言(分隔符, 引号, 是否有标题)、
+ * 计算概况时的空值标记（字符串块）、行数、列数，
+ * 每列：列名、存储方式（字典/直接）、字典或值的字符串块、字典编码（int数组），
+ * 最后是每列的概况（空值标记与读取时不同则重新计算）。字符串块为 数量 + 偏移数组 + UTF-8字节，读取时整块拷贝
+ */
+public class CsvSnapshotService {
+
+    public static final String SNAPSHOT_EXTENSION = ".ruler";
+
+    private static final int MAGIC = 0x52554C52; // "RULR"
+    private static final int VERSION = 3;
+    private static final byte STORAGE_DICTIONARY = 0;
+    private static final byte STORAGE_PLAIN = 1;
+
+    // 指纹校验和在文件开头、中间、结尾各抽样的字节数
+    private static final int FINGERPRINT_SAMPLE_SIZE = 64 * 1024;
+
+    private final ColumnProfiler columnProfiler = new ColumnProfiler();
+    private final DataNormalizationService dataNormalizationService = new DataNormalizationService();
+
+    /**
+     * 快照文件的位置（与CSV同目录，文件名后加.ruler）
+     */
+    public File getSnapshotFile(File csvFile) {
+        return new File(csvFile.getAbsoluteFile().getParentFile(), csvFile.getName() + SNAPSHOT_EXTENSION);
+    }
+
+    /**
+     * 计算源文件指纹：{大小, 修改时间, 抽样CRC32}
+     * 只读取开头、中间和结尾的样本，不扫描整个文件
+     */
+    public long[] fingerprint(File csvFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long modified = Files.getLastModifiedTime(csvFile.toPath()).toMillis();
+
+            CRC32 crc = new CRC32();
+            long[] offsets = {0, Math.max(0, size / 2 - FINGERPRINT_SAMPLE_SIZE / 2), Math.max(0, size - FINGERPRINT_SAMPLE_SIZE)};
+            ByteBuffer sample = ByteBuffer.allocate(FINGERPRINT_SAMPLE_SIZE);
+            for (long offset : offsets) {
+                sample.clear();
+                while (sample.hasRemaining() && channel.read(sample, offset + sample.position()) > 0) {
+                    // 读满样本或到达文件末尾
+                }
+                sample.flip();
+                crc.update(sample);
+            }
+
+            return new long[]{size, modified, crc.getValue()};
+        }
+    }
+
+    /**
+     * 读取快照，快照只保存原始值，按给定的空值标记重新判断；
+     * 保存的概况是按写入时的空值标记计算的，标记不同时重新分析各列
+     *
+     * @return 恢复的CsvData；快照不存在、版本不符或源文件已变化时返回null
+     */
+    public CsvData readSnapshot(File csvFile, NullTokenSet nullTokens) throws IOException {
+        File snapshotFile = getSnapshotFile(csvFile);
+        if (!snapshotFile.isFile() || snapshotFile.length() > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        // 不内存映射快照：映射在回收前一直打开，快照失效后写入新快照时无法替换文件（Windows）
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+            // 先只读取文件头（魔数、版本和源文件指纹），校验通过后才读取其余部分
+            long[] expected = fingerprint(csvFile);
+            ByteBuffer header = ByteBuffer.allocate(8 + expected.length * Long.BYTES);
+            if (!readFully(channel, header, 0)
+                    || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            for (long value : expected) {
+                if (header.getLong() != value) {
+                    // 源文件已变化，快照失效
+                    return null;
+                }
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) (channel.size() - header.capacity()));
+            if (!readFully(channel, buffer, header.capacity())) {
+                return null;
+            }
+
+            Charset charset = Charset.forName(readString(buffer));
+            CsvDialect dialect = new CsvDialect(buffer.getChar(), buffer.getChar(), buffer.get() != 0);
+            List<String> profiledTokens = Arrays.asList(readStringBlock(buffer));
+            int rowCount = buffer.getInt();
+            int columnCount = buffer.getInt();
+
+            List<String> headers = new ArrayList<>(columnCount);
+            List<ColumnVector> columns = new ArrayList<>(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                String name = readString(buffer);
+                byte storage = buffer.get();
+                String[] strings = readStringBlock(buffer);
+
+                if (storage == STORAGE_DICTIONARY) {
+                    int[] codes = new int[rowCount];
+                    buffer.asIntBuffer().get(codes);
+                    buffer.position(buffer.position() + rowCount * Integer.BYTES);
+                    columns.add(ColumnVector.ofDictionary(name, Arrays.asList(strings), codes));
+                } else {
+                    columns.add(ColumnVector.ofValues(name, strings));
+                }
+                columns.get(i).setNullTokens(nullTokens);
+                headers.add(name);
+            }
+
+            boolean profilesValid = profiledTokens.equals(tokensOf(nullTokens));
+            Map<String, ColumnProfile> profiles = new LinkedHashMap<>();
+            for (int i = 0; i < columnCount; i++) {
+                ColumnProfile profile = readProfile(buffer, headers.get(i));
+                profiles.put(headers.get(i), profilesValid ? profile : columnProfiler.profile(columns.get(i)));
+            }
+
+            CsvData csvData = new CsvData();
+            csvData.setFileName(csvFile.getName());
+            csvData.setCharset(charset);
+            csvData.setDialect(dialect);
+            csvData.setHeaders(headers);
+            csvData.setColumns(columns);
+            csvData.setColumnProfiles(profiles);
+            csvData.setTotalRows(rowCount);
+            csvData.setTotalColumns(columnCount);
+            dataNormalizationService.attachNumericColumns(csvData);
+            return csvData;
+        }
+    }
+
+    /**
+     * 从position开始读满buffer，读完后buffer切换为读取模式
+     *
+     * @return 文件不够长时返回false
+     */
+    private boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        buffer.flip();
+        return true;
+    }
+
+    /**
+     * 写入快照（先写临时文件再替换，避免留下不完整的快照）
+     *
+     * @param fingerprint 解析前计算的源文件指纹，见fingerprint()
+     */
+    public void writeSnapshot(File csvFile, CsvData csvData, long[] fingerprint) throws IOException {
+        File snapshotFile = getSnapshotFile(csvFile);
+        File tempFile = new File(snapshotFile.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (long value : fingerprint) {
+                out.writeLong(value);
+            }
+
+            Charset charset = csvData.getCharset() != null ? csvData.getCharset() : StandardCharsets.UTF_8;
+            writeString(out, charset.name());
+            CsvDialect dialect = csvData.getDialect() != null ? csvData.getDialect() : CsvDialect.DEFAULT;
+            out.writeChar(dialect.getDelimiter());
+            out.writeChar(dialect.getQuote());
+            out.writeBoolean(dialect.hasHeader());
+            List<ColumnVector> columns = csvData.getColumns();
+            writeStringBlock(out, tokensOf(columns.isEmpty() ? null : columns.get(0).getNullTokens()));
+            out.writeInt(csvData.getRowCount());
+            out.writeInt(csvData.getHeaders().size());
+
+            for (String header : csvData.getHeaders()) {
+                ColumnVector column = csvData.getColumn(header);
+                writeString(out, header);
+
+                if (column.isDictionaryEncoded()) {
+                    out.writeByte(STORAGE_DICTIONARY);
+                    writeStringBlock(out, column.getDictionary());
+                    for (int rowIndex = 0; rowIndex < column.size(); rowIndex++) {
+                        out.writeInt(column.getCode(rowIndex));
+                    }
+                } else {
+                    out.writeByte(STORAGE_PLAIN);
+                    List<String> values = new ArrayList<>(column.size());
+                    for (int rowIndex = 0; rowIndex < column.size(); rowIndex++) {
+                        values.add(column.get(rowIndex));
+                    }
+                    writeStringBlock(out, values);
+                }
+            }
+
+            for (String header : csvData.getHeaders()) {
+                ColumnProfile profile = csvData.getColumnProfile(header);
+                writeProfile(out, profile != null ? profile : columnProfiler.profile(csvData.getColumn(header)));
+            }
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), snapshotFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static List<String> tokensOf(NullTokenSet nullTokens) {
+        return nullTokens != null ? nullTokens.getTokens() : Collections.emptyList();
+    }
+
+    private void writeProfile(DataOutputStream out, ColumnProfile profile) throws IOException {
+        writeString(out, profile.getType());
+        out.writeInt(profile.getNonEmptyCount());
+        out.writeInt(profile.getNullCount());
+        out.writeInt(profile.getNumericCount());
+        out.writeInt(profile.getDateCount());
+        out.writeDouble(profile.getMin());
+        out.writeDouble(profile.getMax());
+        out.writeInt(profile.getPrecision());
+        out.writeLong(profile.getDistinctCount());
+        out.writeBoolean(profile.isDistinctCountExact());
+    }
+
+    private ColumnProfile readProfile(ByteBuffer buffer, String columnName) {
+        ColumnProfile profile = new ColumnProfile(columnName);
+        profile.setType(readString(buffer));
+        profile.setNonEmptyCount(buffer.getInt());
+        profile.setNullCount(buffer.getInt());
+        profile.setNumericCount(buffer.getInt());
+        profile.setDateCount(buffer.getInt());
+        profile.setMin(buffer.getDouble());
+        profile.setMax(buffer.getDouble());
+        profile.setPrecision(buffer.getInt());
+        profile.setDistinctCount(buffer.getLong());
+        profile.setDistinctCountExact(buffer.get() != 0);
+        return profile;
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 写入字符串块：数量、每个字符串的结束偏移、全部UTF-8字节
+     */
+    private void writeStringBlock(DataOutputStream out, List<String> values) throws IOException {
+        byte[][] encoded = new byte[values.size()][];
+        int offset = 0;
+        out.writeInt(values.size());
+        for (int i = 0; i < encoded.length; i++) {
+            String value = values.get(i);
+            encoded[i] = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            offset += encoded[i].length;
+            out.writeInt(offset);
+        }
+        for (byte[] bytes : encoded) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * 读取字符串块：偏移数组和字节各做一次整块拷贝，再逐个解码
+     */
+    private String[] readStringBlock(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        int[] ends = new int[count];
+        buffer.asIntBuffer().get(ends);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+
+        byte[] bytes = new byte[count == 0 ? 0 : ends[count - 1]];
+        buffer.get(bytes);
+
+        String[] strings = new String[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            strings[i] = start == ends[i] ? "" : new String(bytes, start, ends[i] - start, StandardCharsets.UTF_8);
+            start = ends[i];
+        }
+        return strings;
+    }
+}
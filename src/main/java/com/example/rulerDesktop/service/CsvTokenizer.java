@@ -0,0 +1,135 @@
+package com.example.rulerDesktop.service;
+
+import com.example.rulerDesktop.model.CsvDialect;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSV记录分词器
+ * 在整个字符流上运行单遍状态机，不预先按行切分：
+ * 引号内的换行符属于字段内容，""表示转义的引号，CRLF、LF和单独的CR都作为记录结束。
+ * 分隔符和引号字符由CsvDialect指定，默认为逗号和双引号
+ */
+public class CsvTokenizer {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char delimiter;
+    private final char quote;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private boolean endOfStream = false;
+
+    // 当前字段内容，跨记录复用
+    private final StringBuilder field = new StringBuilder();
+
+    public CsvTokenizer(Reader reader) {
+        this(reader, CsvDialect.DEFAULT);
+    }
+
+    public CsvTokenizer(Reader reader, CsvDialect dialect) {
+        this.reader = reader;
+        this.delimiter = dialect.getDelimiter();
+        this.quote = dialect.getQuote();
+    }
+
+    /**
+     * 读取下一条记录，跳过只包含空白字符的行
+     *
+     * @return 记录的字段列表（已去除首尾空白），到达流末尾时返回null
+     */
+    public List<String> nextRecord() throws IOException {
+        while (true) {
+            if (!ensureData()) {
+                return null;
+            }
+
+            List<String> record = new ArrayList<>();
+            boolean inQuotes = false;
+            // 是否出现过非空白字符、分隔符或引号（用于识别空白行）
+            boolean hasContent = false;
+            field.setLength(0);
+
+            while (true) {
+                if (!ensureData()) {
+                    // 流结束，最后一条记录没有换行符
+                    break;
+                }
+
+                char c = buffer[position++];
+
+                if (inQuotes) {
+                    if (c == quote) {
+                        if (ensureData() && buffer[position] == quote) {
+                            // 转义的引号
+                            field.append(quote);
+                            position++;
+                        } else {
+                            inQuotes = false;
+                        }
+                    } else {
+                        // 引号内的分隔符和换行符都属于字段内容
+                        field.append(c);
+                    }
+                } else if (c == quote) {
+                    inQuotes = true;
+                    hasContent = true;
+                } else if (c == delimiter) {
+                    record.add(field.toString().trim());
+                    field.setLength(0);
+                    hasContent = true;
+                } else if (c == '\n') {
+                    break;
+                } else if (c == '\r') {
+                    // CRLF作为一个记录结束符
+                    if (ensureData() && buffer[position] == '\n') {
+                        position++;
+                    }
+                    break;
+                } else {
+                    field.append(c);
+                    if (!Character.isWhitespace(c)) {
+                        hasContent = true;
+                    }
+                }
+            }
+
+            if (hasContent) {
+                record.add(field.toString().trim());
+                return record;
+            }
+            // 空白行，继续读取下一条
+        }
+    }
+
+    /**
+     * 确保缓冲区中至少有一个未读字符
+     */
+    private boolean ensureData() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        if (endOfStream) {
+            return false;
+        }
+
+        int count;
+        do {
+            count = reader.read(buffer, 0, buffer.length);
+        } while (count == 0);
+
+        if (count < 0) {
+            endOfStream = true;
+            return false;
+        }
+
+        position = 0;
+        limit = count;
+        return true;
+    }
+}
@@ -1,10 +1,17 @@
 package com.example.rulerDesktop.service;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
+import com.example.rulerDesktop.model.ColumnProfile;
+import com.example.rulerDesktop.model.ColumnVector;
+import com.example.rulerDesktop.model.CsvData;
+import com.example.rulerDesktop.model.NullTokenSet;
+import com.example.rulerDesktop.model.NumericColumn;
+import com.example.rulerDesktop.model.OffHeapArray;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Locale;
-import java.util.regex.Pattern;
+import java.util.RandomAccess;
 
 /**
  * 数据标准化服务类（改进版）
@@ -12,21 +19,9 @@ import java.util.regex.Pattern;
  */
 public class DataNormalizationService {
 
-    private static final Pattern NUMERIC_PATTERN = Pattern.compile("^-?\\d*\\.?\\d+([eE][-+]?\\d+)?$");
     private static final String NULL_VALUE = "<NULL>";
     private static final String EMPTY_VALUE = "<EMPTY>";
 
-    // 数字格式化器（线程安全）
-    private static final ThreadLocal<DecimalFormat> DECIMAL_FORMAT =
-            ThreadLocal.withInitial(() -> {
-                DecimalFormat df = new DecimalFormat("#.##",
-                        DecimalFormatSymbols.getInstance(Locale.US));
-                df.setMinimumFractionDigits(0);
-                df.setMaximumFractionDigits(6);
-                df.setGroupingUsed(false);
-                return df;
-            });
-
     /**
      * 区间类型枚举
      */
@@ -38,27 +33,119 @@ public class DataNormalizationService {
     }
 
     /**
-     * 标准化单个值
+     * 标准化单个值，空值标记不区分大小写，直接在字符上匹配（见NullTokenSet）
      */
-    public String normalizeValue(String value) {
-        if (value == null) {
+    public String normalizeValue(String value, NullTokenSet nullTokens) {
+        return normalizeValue(value, value != null && nullTokens.matches(value));
+    }
+
+    /**
+     * 标准化单个值，是否为空值标记已经判断过（见ColumnVector.isNullToken）
+     */
+    private String normalizeValue(String value, boolean nullToken) {
+        if (value == null || nullToken) {
             return NULL_VALUE;
         }
 
         String trimmed = value.trim();
-        if (trimmed.isEmpty()) {
-            return EMPTY_VALUE;
+        return trimmed.isEmpty() ? EMPTY_VALUE : trimmed;
+    }
+
+    /**
+     * 标准化列中的一行：使用追加时记录的空值标记位
+     */
+    private String normalizeRow(ColumnVector column, int rowIndex) {
+        return normalizeValue(column.get(rowIndex), column.isNullToken(rowIndex));
+    }
+
+    /**
+     * 获取字典编码列标准化后的字典，下标为编码
+     * 结果缓存在列向量上，每个不同值只标准化一次；字典新增的值在下次调用时补齐
+     */
+    public String[] getNormalizedDictionary(ColumnVector column) {
+        List<String> dictionary = column.getDictionary();
+        String[] normalized = column.getNormalizedDictionary();
+        if (normalized != null && normalized.length == dictionary.size()) {
+            return normalized;
+        }
+
+        // 补齐到新数组再替换，已经拿到旧数组的调用方不受影响
+        int cached = normalized == null ? 0 : normalized.length;
+        String[] extended = normalized == null
+                ? new String[dictionary.size()]
+                : Arrays.copyOf(normalized, dictionary.size());
+        for (int code = cached; code < extended.length; code++) {
+            extended[code] = normalizeValue(dictionary.get(code), column.isNullTokenCode(code));
+        }
+        column.setNormalizedDictionary(extended);
+        return extended;
+    }
+
+    /**
+     * 标准化一列的所有值
+     */
+    public List<String> normalizeColumn(ColumnVector column) {
+        return normalizeColumn(column, 0);
+    }
+
+    /**
+     * 标准化一列从fromRow开始的值
+     * 字典编码列按编码查标准化后的字典，不逐行标准化；直接存储的列逐行标准化，
+     * 空值标记使用追加时记录的结果，不再匹配字符串
+     */
+    public List<String> normalizeColumn(ColumnVector column, int fromRow) {
+        int size = column.size();
+        List<String> normalizedValues = new ArrayList<>(Math.max(0, size - fromRow));
+        if (column.isDictionaryEncoded()) {
+            String[] normalized = getNormalizedDictionary(column);
+            for (int rowIndex = fromRow; rowIndex < size; rowIndex++) {
+                normalizedValues.add(normalized[column.getCode(rowIndex)]);
+            }
+        } else {
+            for (int rowIndex = fromRow; rowIndex < size; rowIndex++) {
+                normalizedValues.add(normalizeRow(column, rowIndex));
+            }
         }
+        return normalizedValues;
+    }
 
-        // 处理常见的null值表示
-        String lower = trimmed.toLowerCase();
-        if (lower.equals("null") || lower.equals("n/a") || lower.equals("na") ||
-                lower.equals("none") || lower.equals("undefined") || lower.equals("-") ||
-                lower.equals("nan") || lower.equals("inf") || lower.equals("infinity")) {
-            return NULL_VALUE;
+    /**
+     * 一列前rowCount行标准化后的只读视图，读取时才标准化，不保存每行的结果
+     * 字典编码列按编码查标准化后的字典，与normalizeColumn的结果相同
+     */
+    public List<String> normalizedView(ColumnVector column, int rowCount) {
+        if (rowCount < 0 || rowCount > column.size()) {
+            throw new IndexOutOfBoundsException("行数越界: " + rowCount);
+        }
+        String[] normalizedDictionary = column.isDictionaryEncoded() ? getNormalizedDictionary(column) : null;
+        return new NormalizedView(column, rowCount, normalizedDictionary);
+    }
+
+    private class NormalizedView extends AbstractList<String> implements RandomAccess {
+        private final ColumnVector column;
+        private final int size;
+        private final String[] normalizedDictionary;
+
+        NormalizedView(ColumnVector column, int size, String[] normalizedDictionary) {
+            this.column = column;
+            this.size = size;
+            this.normalizedDictionary = normalizedDictionary;
+        }
+
+        @Override
+        public String get(int rowIndex) {
+            if (rowIndex < 0 || rowIndex >= size) {
+                throw new IndexOutOfBoundsException("行索引越界: " + rowIndex);
+            }
+            return normalizedDictionary != null
+                    ? normalizedDictionary[column.getCode(rowIndex)]
+                    : normalizeRow(column, rowIndex);
         }
 
-        return trimmed;
+        @Override
+        public int size() {
+            return size;
+        }
     }
 
     /**
@@ -87,22 +174,149 @@ public class DataNormalizationService {
     }
 
     /**
-     * 检测单个值是否为数值
-     * 改进：支持科学计数法
+     * 把列概况判定为数值型的列解码为double数组，保存在列向量上（加载时调用一次）
      */
-    public boolean isNumericValue(String value) {
-        if (value == null || value.equals(NULL_VALUE) || value.equals(EMPTY_VALUE)) {
-            return false;
+    public void attachNumericColumns(CsvData csvData) {
+        for (String header : csvData.getHeaders()) {
+            ColumnProfile profile = csvData.getColumnProfile(header);
+            if (profile != null && profile.isNumeric()) {
+                ColumnVector column = csvData.getColumn(header);
+                column.setNumericColumn(toNumericColumn(column));
+            }
         }
+    }
 
-        // 处理特殊数值
-        String lower = value.toLowerCase();
-        if (lower.equals("nan") || lower.equals("inf") || lower.equals("infinity") ||
-                lower.equals("-inf") || lower.equals("-infinity")) {
-            return false;
+    /**
+     * 把一列标准化后解码为数值，判断规则与normalizeValue/isNumericValue一致
+     * 字典编码列每个不同值只解码一次；堆外列的数值同样写入堆外存储
+     */
+    public NumericColumn toNumericColumn(ColumnVector column) {
+        return toNumericColumn(column, column.size());
+    }
+
+    /**
+     * 把一列的前rowCount行解码为数值（跟踪模式下列在之后继续追加）
+     */
+    public NumericColumn toNumericColumn(ColumnVector column, int rowCount) {
+        int size = rowCount;
+        OffHeapArray offHeapValues = column.getStorage() != null
+                ? new OffHeapArray(column.getStorage(), Double.BYTES)
+                : null;
+        double[] values = offHeapValues == null ? new double[size] : null;
+        long[] nullBits = new long[(size + 63) >>> 6];
+        int nonEmptyCount = 0;
+        int numericCount = 0;
+
+        if (column.isDictionaryEncoded()) {
+            String[] normalizedDictionary = getNormalizedDictionary(column);
+            double[] decoded = new double[normalizedDictionary.length];
+            // 0: 空值，1: 非数值文本，2: 数值
+            byte[] kinds = new byte[normalizedDictionary.length];
+            for (int code = 0; code < kinds.length; code++) {
+                String normalized = normalizedDictionary[code];
+                double number = NumericScanner.parse(normalized);
+                if (normalized.equals(NULL_VALUE) || normalized.equals(EMPTY_VALUE)) {
+                    kinds[code] = 0;
+                } else if (!Double.isNaN(number)) {
+                    kinds[code] = 2;
+                    decoded[code] = number;
+                } else {
+                    kinds[code] = 1;
+                }
+            }
+
+            for (int rowIndex = 0; rowIndex < size; rowIndex++) {
+                int code = column.getCode(rowIndex);
+                setValue(values, offHeapValues, rowIndex, decoded[code]);
+                if (kinds[code] == 2) {
+                    numericCount++;
+                } else {
+                    nullBits[rowIndex >>> 6] |= 1L << rowIndex;
+                }
+                if (kinds[code] != 0) {
+                    nonEmptyCount++;
+                }
+            }
+        } else {
+            for (int rowIndex = 0; rowIndex < size; rowIndex++) {
+                String normalized = normalizeRow(column, rowIndex);
+                double value = 0;
+                if (normalized.equals(NULL_VALUE) || normalized.equals(EMPTY_VALUE)) {
+                    nullBits[rowIndex >>> 6] |= 1L << rowIndex;
+                } else {
+                    nonEmptyCount++;
+                    double number = NumericScanner.parse(normalized);
+                    if (!Double.isNaN(number)) {
+                        value = number;
+                        numericCount++;
+                    } else {
+                        nullBits[rowIndex >>> 6] |= 1L << rowIndex;
+                    }
+                }
+                setValue(values, offHeapValues, rowIndex, value);
+            }
         }
 
-        return NUMERIC_PATTERN.matcher(value).matches();
+        return offHeapValues != null
+                ? new NumericColumn(offHeapValues, size, nullBits, nonEmptyCount, numericCount)
+                : new NumericColumn(values, nullBits, nonEmptyCount, numericCount);
+    }
+
+    /**
+     * 写入一行的数值（空值行也写入，保证堆外的段都已分配）
+     */
+    private static void setValue(double[] values, OffHeapArray offHeapValues, int rowIndex, double value) {
+        if (values != null) {
+            values[rowIndex] = value;
+        } else {
+            offHeapValues.putDouble(rowIndex, value);
+        }
+    }
+
+    /**
+     * 把已经标准化的值（normalizeValue的结果）解码为数值
+     */
+    public NumericColumn toNumericColumn(List<String> normalizedValues) {
+        int size = normalizedValues.size();
+        double[] values = new double[size];
+        long[] nullBits = new long[(size + 63) >>> 6];
+        int nonEmptyCount = 0;
+        int numericCount = 0;
+
+        for (int rowIndex = 0; rowIndex < size; rowIndex++) {
+            String value = normalizedValues.get(rowIndex);
+            if (value.equals(NULL_VALUE) || value.equals(EMPTY_VALUE)) {
+                nullBits[rowIndex >>> 6] |= 1L << rowIndex;
+                continue;
+            }
+            nonEmptyCount++;
+            double number = NumericScanner.parse(value);
+            if (!Double.isNaN(number)) {
+                values[rowIndex] = number;
+                numericCount++;
+            } else {
+                nullBits[rowIndex >>> 6] |= 1L << rowIndex;
+            }
+        }
+
+        return new NumericColumn(values, nullBits, nonEmptyCount, numericCount);
+    }
+
+    /**
+     * 根据解码结果检测列是否为数值类型（规则与isNumericColumn(List)一致）
+     */
+    public boolean isNumericColumn(NumericColumn numericColumn) {
+        int nonEmptyCount = numericColumn.getNonEmptyCount();
+        return nonEmptyCount > 0 && (double) numericColumn.getNumericCount() / nonEmptyCount >= 0.8;
+    }
+
+    /**
+     * 检测单个值是否为数值
+     * 改进：支持科学计数法；单次扫描字符，不使用正则（见NumericScanner），
+     * <NULL>、<EMPTY>和NaN/Infinity等特殊值都不是数值
+     */
+    public boolean isNumericValue(String value) {
+        return NumericScanner.isNumeric(value);
     }
 
     /**
@@ -154,12 +368,15 @@ public class DataNormalizationService {
             return value;
         }
 
-        // 过滤出数值
-        List<Double> numericValues = values.stream()
-                .filter(this::isNumericValue)
-                .map(Double::parseDouble)
-                .sorted()
-                .toList();
+        // 过滤出数值（校验和解析一次完成）
+        List<Double> numericValues = new ArrayList<>(values.size());
+        for (String value : values) {
+            double number = NumericScanner.parse(value);
+            if (!Double.isNaN(number)) {
+                numericValues.add(number);
+            }
+        }
+        numericValues.sort(null);
 
         if (numericValues.isEmpty()) {
             // 如果没有数值，使用第一个值作为标签
@@ -178,7 +395,7 @@ public class DataNormalizationService {
     }
 
     /**
-     * 格式化区间
+     * 格式化区间（同一区间的标签只生成一次，见LabelFormatter）
      *
      * @param min 最小值
      * @param max 最大值
@@ -186,93 +403,33 @@ public class DataNormalizationService {
      * @return 格式化的区间字符串
      */
     public String formatInterval(double min, double max, IntervalType intervalType) {
-        String minStr = formatNumber(min);
-        String maxStr = formatNumber(max);
-
-        if (min == max) {
-            return minStr;
-        }
-
-        switch (intervalType) {
-            case CLOSED:
-                return String.format("[%s, %s]", minStr, maxStr);
-            case OPEN:
-                return String.format("(%s, %s)", minStr, maxStr);
-            case LEFT_OPEN:
-                return String.format("(%s, %s]", minStr, maxStr);
-            case RIGHT_OPEN:
-                return String.format("[%s, %s)", minStr, maxStr);
-            default:
-                // 默认使用简单格式（向后兼容）
-                return minStr + "-" + maxStr;
-        }
+        return LabelFormatter.formatInterval(min, max, intervalType);
     }
 
     /**
      * 创建简单的区间标签（不带括号，用于向后兼容）
      */
     public String createSimpleRangeLabel(double min, double max) {
-        String minStr = formatNumber(min);
-        String maxStr = formatNumber(max);
-
-        if (min == max) {
-            return minStr;
-        }
-
-        return minStr + "-" + maxStr;
+        return LabelFormatter.formatSimpleRange(min, max);
     }
 
     /**
      * 格式化数字显示（改进版）
      * 改进点：
-     * 1. 使用 DecimalFormat 更专业
-     * 2. 自动处理小数位数
-     * 3. 支持科学计数法的大数
+     * 1. 最多保留6位小数，自动去掉末尾的0
+     * 2. 支持科学计数法的大数
+     * 3. 常见数值不经过DecimalFormat（见LabelFormatter）
      */
     public String formatNumber(double number) {
-        // 处理特殊值
-        if (Double.isNaN(number)) return "NaN";
-        if (Double.isInfinite(number)) return number > 0 ? "∞" : "-∞";
-
-        // 如果是整数
-        if (number == Math.floor(number) && !Double.isInfinite(number)) {
-            // 如果数字太大，使用科学计数法
-            if (Math.abs(number) > 1e10) {
-                return String.format("%.2e", number);
-            }
-            return String.valueOf((long) number);
-        }
-
-        // 小数的情况
-        if (Math.abs(number) < 0.01 && number != 0) {
-            // 非常小的数，使用科学计数法
-            return String.format("%.2e", number);
-        }
-
-        // 使用 DecimalFormat
-        String formatted = DECIMAL_FORMAT.get().format(number);
-
-        // 去掉不必要的尾随零
-        if (formatted.contains(".")) {
-            formatted = formatted.replaceAll("0+$", "").replaceAll("\\.$", "");
-        }
-
-        return formatted;
+        return LabelFormatter.formatNumber(number);
     }
 
     /**
      * 解析数值字符串为 Double
      */
     public Double parseNumericValue(String value) {
-        if (!isNumericValue(value)) {
-            return null;
-        }
-
-        try {
-            return Double.parseDouble(value);
-        } catch (NumberFormatException e) {
-            return null;
-        }
+        double number = NumericScanner.parse(value);
+        return Double.isNaN(number) ? null : number;
     }
 
     /**
@@ -303,9 +460,11 @@ public class DataNormalizationService {
 
     /**
      * 检测值的类型
+     *
+     * @param nullTokens 当前使用的空值标记
      */
-    public ValueType detectValueType(String value) {
-        String normalized = normalizeValue(value);
+    public ValueType detectValueType(String value, NullTokenSet nullTokens) {
+        String normalized = normalizeValue(value, nullTokens);
 
         if (normalized.equals(NULL_VALUE)) {
             return ValueType.NULL;
@@ -351,12 +510,9 @@ public class DataNormalizationService {
             return 0;
         }
 
-        String[] parts = value.split("\\.");
-        if (parts.length < 2) {
-            return 0;
-        }
-
-        return parts[1].length();
+        // 数值中最多一个小数点，小数点之后的字符数（包括指数部分，与之前按"."切分的结果一致）
+        int dot = value.indexOf('.');
+        return dot < 0 ? 0 : value.length() - dot - 1;
     }
 
     /**
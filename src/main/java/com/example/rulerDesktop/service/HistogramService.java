@@ -1,10 +1,15 @@
 package com.example.rulerDesktop.service;
 
+import com.example.rulerDesktop.model.ColumnVector;
 import com.example.rulerDesktop.model.DataPoint;
+import com.example.rulerDesktop.model.NumericColumn;
 import com.example.rulerDesktop.model.CsvData;
 import com.example.rulerDesktop.model.Histogram;
+import com.example.rulerDesktop.model.RowIndexList;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -34,6 +39,15 @@ public class HistogramService {
      * 更新版本：使用BinningService
      */
     public Histogram generateSingleHistogram(CsvData csvData, String columnName, int binCount) {
+        return generateSingleHistogram(csvData, columnName, binCount, null);
+    }
+
+    /**
+     * 为指定列生成Histogram数据，分箱时每隔ImportJob.CANCEL_CHECK_INTERVAL_ROWS行检查一次取消
+     *
+     * @param job 导入任务，为null时不可取消
+     */
+    public Histogram generateSingleHistogram(CsvData csvData, String columnName, int binCount, ImportJob job) {
         if (csvData == null) {
             throw new IllegalArgumentException("CSV数据不能为空");
         }
@@ -54,48 +68,52 @@ public class HistogramService {
 
         int columnIndex = csvData.getHeaders().indexOf(columnName);
 
-        // 提取并标准化列值
-        List<String> columnValues = new ArrayList<>();
-        List<DataPoint> dataPoints = new ArrayList<>();
-
-        for (int rowIndex = 0; rowIndex < csvData.getRows().size(); rowIndex++) {
-            Map<String, String> row = csvData.getRows().get(rowIndex);
-            String value = row.get(columnName);
-            String normalizedValue = dataNormalizationService.normalizeValue(value);
-
-            columnValues.add(normalizedValue);
-            dataPoints.add(new DataPoint(value, rowIndex, columnIndex));
-        }
+        // 原始值是列的标准化视图，不逐行复制；字典编码列按不同值标准化一次（结果缓存在列上）
+        ColumnVector column = csvData.getColumn(columnName);
+        int rowCount = column.size();
+        histogram.setColumn(column, columnIndex);
+        histogram.setOriginalValues(dataNormalizationService.normalizedView(column, rowCount));
 
-        histogram.setOriginalValues(new ArrayList<>(columnValues));
-        histogram.setTotalRecords(columnValues.size());
+        // 数值只解码一次，重新分箱时直接复用（堆外列解码到堆外）
+        NumericColumn numericValues = column.getNumericColumn() != null
+                ? column.getNumericColumn()
+                : dataNormalizationService.toNumericColumn(column);
+        histogram.setNumericValues(numericValues);
+        histogram.setTotalRecords(rowCount);
 
-        if (columnValues.isEmpty()) {
+        if (rowCount == 0) {
             return histogram;
         }
 
-        // 使用BinningService执行分箱
+        // 使用BinningService执行分箱：直接读取列向量，每个箱只记录行号
         BinningService.BinningResult binningResult = binningService.performBinning(
-                columnValues,
-                dataPoints,
+                column,
+                rowCount,
+                numericValues,
                 binCount,
-                BinningService.BinningStrategy.AUTO
+                BinningService.BinningStrategy.AUTO,
+                job
         );
 
-        // 设置结果
-        histogram.setBinDetails(binningResult.getBinDetails());
+        applyBinningResult(histogram, binningResult);
+
+        return histogram;
+    }
+
+    /**
+     * 设置分箱结果，频次为每个箱的行数
+     */
+    private void applyBinningResult(Histogram histogram, BinningService.BinningResult binningResult) {
+        histogram.setBinRows(binningResult.getBinRows());
         histogram.setValueToBinMapping(binningResult.getValueToBinMapping());
         histogram.setOrderedValues(binningResult.getOrderedBinLabels());
         histogram.setActualBinCount(binningResult.getActualBinCount());
 
-        // 计算频次
         Map<String, Integer> frequency = new LinkedHashMap<>();
-        for (Map.Entry<String, List<DataPoint>> entry : binningResult.getBinDetails().entrySet()) {
+        for (Map.Entry<String, RowIndexList> entry : binningResult.getBinRows().entrySet()) {
             frequency.put(entry.getKey(), entry.getValue().size());
         }
         histogram.setValueFrequency(frequency);
-
-        return histogram;
     }
 
     /**
@@ -116,62 +134,123 @@ public class HistogramService {
             throw new IllegalStateException("Histogram缺少原始值数据，无法重新分箱");
         }
 
-        // 重建数据点
-        List<DataPoint> dataPoints = histogram.getBinDetails().values().stream()
-                .flatMap(List::stream)
-                .sorted(Comparator.comparingInt(DataPoint::getRowIndex))
-                .collect(Collectors.toList());
+        // 重新分箱：原始值是列的视图时直接读取列（字典编码列按编码），结果整体替换，不修改原有的箱
+//        histogram.setBinCount(newBinCount);
+        List<String> originalValues = histogram.getOriginalValues();
+        BinningService.BinningResult binningResult = histogram.getColumn() != null
+                ? binningService.performBinning(histogram.getColumn(), originalValues.size(),
+                        histogram.getNumericValues(), newBinCount, BinningService.BinningStrategy.AUTO)
+                : binningService.performBinning(originalValues, histogram.getNumericValues(),
+                        newBinCount, BinningService.BinningStrategy.AUTO);
 
-        if (dataPoints.isEmpty()) {
-            for (int i = 0; i < histogram.getOriginalValues().size(); i++) {
-                dataPoints.add(new DataPoint(histogram.getOriginalValues().get(i), i, 0));
-            }
+        applyBinningResult(histogram, binningResult);
+
+        return histogram;
+    }
+
+    /**
+     * 复制Histogram，副本读取csvData（见CsvParsingService.copyOf）中的同名列
+     * 只复制每个箱的计数，行号和列数据共享；之后对原Histogram的appendRows不影响副本（跟踪模式下界面显示副本）
+     */
+    public Histogram copyOf(Histogram histogram, CsvData csvData) {
+        Histogram copy = histogram.copy();
+        ColumnVector column = csvData.getColumn(histogram.getColumnName());
+        if (column != null && histogram.getOriginalValues() != null) {
+            copy.setColumn(column, csvData.getHeaders().indexOf(histogram.getColumnName()));
+            copy.setOriginalValues(dataNormalizationService.normalizedView(column, histogram.getOriginalValues().size()));
         }
+        return copy;
+    }
 
-        // 重新分箱
-//        histogram.setBinCount(newBinCount);
-        histogram.setActualBinCount(newBinCount);
-        histogram.getBinDetails().clear();
-        histogram.getValueToBinMapping().clear();
+    /**
+     * 把追加到CsvData末尾的行计入已有的Histogram（跟踪模式）
+     * 新值都能放入现有的箱时只累加频次；否则按当前分箱数量重新生成
+     * 累加时直接修改传入的Histogram：跟踪模式下它只由监视线程使用，界面显示copyOf()得到的副本
+     *
+     * @param fromRow 第一条新行的行号
+     */
+    public Histogram appendRows(Histogram histogram, CsvData csvData, int fromRow) {
+        if (histogram == null || csvData == null) {
+            throw new IllegalArgumentException("Histogram和CSV数据不能为空");
+        }
 
-        // 使用BinningService执行分箱
-        BinningService.BinningResult binningResult = binningService.performBinning(
-                histogram.getOriginalValues(),
-                dataPoints,
-                newBinCount,
-                BinningService.BinningStrategy.AUTO
-        );
+        String columnName = histogram.getColumnName();
+        ColumnVector column = csvData.getColumn(columnName);
+        if (column == null) {
+            throw new IllegalArgumentException("列 '" + columnName + "' 不存在");
+        }
+        if (histogram.getOriginalValues().size() != fromRow || histogram.getOrderedValues().isEmpty()) {
+            return regenerate(histogram, csvData);
+        }
 
-        histogram.setBinDetails(binningResult.getBinDetails());
-        histogram.setValueToBinMapping(binningResult.getValueToBinMapping());
-        histogram.setOrderedValues(binningResult.getOrderedBinLabels());
-        histogram.setActualBinCount(binningResult.getActualBinCount());
+        // 先为全部新值找到箱，有一个找不到就整体重建，避免留下一半更新的结果
+        // 映射可能与副本共享（见Histogram.copy()），分配器只向映射新增值：换成ConcurrentHashMap，读取副本的线程不受影响
+        if (!(histogram.getValueToBinMapping() instanceof ConcurrentHashMap)) {
+            histogram.setValueToBinMapping(new ConcurrentHashMap<>(histogram.getValueToBinMapping()));
+        }
+        BinningService.BinAssigner assigner = binningService.createBinAssigner(
+                histogram.getValueToBinMapping(), histogram.getOrderedValues());
+        int rowCount = column.size();
+        int newRows = rowCount - fromRow;
+        List<String> normalizedValues = dataNormalizationService.normalizeColumn(column, fromRow);
+        String[] binLabels = new String[newRows];
+        for (int i = 0; i < newRows; i++) {
+            binLabels[i] = assigner.assign(normalizedValues.get(i));
+            if (binLabels[i] == null) {
+                return regenerate(histogram, csvData);
+            }
+        }
 
-        // 重新计算频次
-        Map<String, Integer> frequency = new LinkedHashMap<>();
-        for (Map.Entry<String, List<DataPoint>> entry : binningResult.getBinDetails().entrySet()) {
-            frequency.put(entry.getKey(), entry.getValue().size());
+        for (int i = 0; i < newRows; i++) {
+            histogram.getBinRows().computeIfAbsent(binLabels[i], k -> new RowIndexList()).add(fromRow + i);
+            histogram.getValueFrequency().merge(binLabels[i], 1, Integer::sum);
         }
-        histogram.setValueFrequency(frequency);
+        histogram.setColumn(column, csvData.getHeaders().indexOf(columnName));
+        histogram.setOriginalValues(dataNormalizationService.normalizedView(column, rowCount));
+        histogram.setTotalRecords(rowCount);
+        // 解码结果不再与原始值对应，重新分箱时按需重新解码
+        histogram.setNumericValues(null);
 
         return histogram;
     }
 
+    private Histogram regenerate(Histogram histogram, CsvData csvData) {
+        int binCount = Math.max(BinningService.MIN_BIN_COUNT,
+                Math.min(BinningService.MAX_BIN_COUNT, histogram.getActualBinCount()));
+        return generateSingleHistogram(csvData, histogram.getColumnName(), binCount);
+    }
+
     /**
      * 批量生成所有列的Histogram
      */
     public Map<String, Histogram> generateAllHistograms(CsvData csvData, int binCount) {
+        return generateAllHistograms(csvData, binCount, null);
+    }
+
+    /**
+     * 为所有列生成Histogram，每生成一列通过导入任务报告分箱进度并检查取消
+     *
+     * @param job 导入任务，为null时不可取消
+     */
+    public Map<String, Histogram> generateAllHistograms(CsvData csvData, int binCount, ImportJob job) {
         if (csvData == null) {
             throw new IllegalArgumentException("CSV数据不能为空");
         }
 
         Map<String, Histogram> histograms = new LinkedHashMap<>();
 
-        for (String columnName : csvData.getHeaders()) {
+        List<String> headers = csvData.getHeaders();
+        for (int i = 0; i < headers.size(); i++) {
+            String columnName = headers.get(i);
+            if (job != null) {
+                job.progress(ImportJob.Stage.BINNING, i, headers.size());
+            }
             try {
-                Histogram histogram = generateSingleHistogram(csvData, columnName, binCount);
+                Histogram histogram = generateSingleHistogram(csvData, columnName, binCount, job);
                 histograms.put(columnName, histogram);
                 System.out.println("成功生成列 '" + columnName + "' 的Histogram");
+            } catch (CancellationException e) {
+                throw e;
             } catch (Exception e) {
                 System.err.println("生成列 '" + columnName + "' 的Histogram时出错: " + e.getMessage());
                 e.printStackTrace();
@@ -201,14 +280,14 @@ public class HistogramService {
             return false;
         }
 
-        if (histogram.getBinDetails() == null) {
+        if (histogram.getBinRows() == null) {
             return false;
         }
 
         // 验证频次和详情数据的一致性
         for (String binLabel : histogram.getOrderedValues()) {
             Integer frequency = histogram.getValueFrequency().get(binLabel);
-            List<DataPoint> details = histogram.getBinDetails().get(binLabel);
+            RowIndexList details = histogram.getBinRows().get(binLabel);
 
             if (frequency == null || details == null) {
                 return false;
@@ -278,10 +357,10 @@ public class HistogramService {
 
         // 如果是数值类型，计算统计值
         List<Double> numericValues = dataPoints.stream()
-                .map(DataPoint::getValue)
-                .filter(dataNormalizationService::isNumericValue)
-                .map(Double::parseDouble)
+                .mapToDouble(point -> NumericScanner.parse(point.getValue()))
+                .filter(value -> !Double.isNaN(value))
                 .sorted()
+                .boxed()
                 .collect(Collectors.toList());
 
         if (!numericValues.isEmpty()) {
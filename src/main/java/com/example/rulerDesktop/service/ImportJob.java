@@ -0,0 +1,79 @@
+package com.example.rulerDesktop.service;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * 一次导入任务：解析、列分析、分箱和视图生成各阶段共享的取消标志和进度回调
+ * 各阶段在循环中定期调用checkCancelled()/progress()，取消后抛出CancellationException，
+ * 已分配的列数据（包括堆外存储）在异常传出时释放，不写入快照
+ */
+public class ImportJob {
+
+    /**
+     * 导入阶段
+     */
+    public enum Stage {
+        PARSE("解析"),
+        PROFILE("分析列"),
+        BINNING("分箱"),
+        VIEWS("生成视图");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() { return label; }
+    }
+
+    // 逐行处理的循环中每隔多少行检查一次是否已取消
+    public static final int CANCEL_CHECK_INTERVAL_ROWS = 4 * 1024;
+
+    private final ImportProgressListener listener;
+    private volatile boolean cancelled = false;
+
+    public ImportJob() {
+        this(null);
+    }
+
+    /**
+     * @param listener 进度回调，在执行导入的线程上调用，为null时不回调
+     */
+    public ImportJob(ImportProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 请求取消（可以在任意线程调用），正在执行的阶段在下一次检查时停止
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 已取消时抛出CancellationException
+     */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("导入已取消");
+        }
+    }
+
+    /**
+     * 报告阶段进度，同时检查是否已取消
+     *
+     * @param done 已完成的量（解析阶段为字节数，其他阶段为列数）
+     * @param total 总量
+     */
+    public void progress(Stage stage, long done, long total) {
+        checkCancelled();
+        if (listener != null) {
+            listener.onStageProgress(stage, done, total);
+        }
+    }
+}
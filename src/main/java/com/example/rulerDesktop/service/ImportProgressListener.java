@@ -0,0 +1,16 @@
+package com.example.rulerDesktop.service;
+
+/**
+ * 导入任务的阶段进度回调，在执行导入的线程上调用
+ */
+public interface ImportProgressListener {
+
+    /**
+     * 阶段进度
+     *
+     * @param stage 当前阶段
+     * @param done 已完成的量：解析阶段为已读取的字节数，其他阶段为已处理的列数
+     * @param total 总量
+     */
+    void onStageProgress(ImportJob.Stage stage, long done, long total);
+}
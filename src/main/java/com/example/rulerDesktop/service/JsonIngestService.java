@@ -0,0 +1,249 @@
+package com.example.rulerDesktop.service;
+
+import com.example.rulerDesktop.model.ColumnVector;
+import com.example.rulerDesktop.model.CsvData;
+import com.example.rulerDesktop.model.NullTokenSet;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON导入服务类
+ * 使用Jackson的JsonParser逐个token流式读取JSON Lines（每行一个对象）或对象数组，不构建文档树：
+ * 嵌套对象按"父.子"展开为列，数组保留为JSON文本，null与缺少的字段一样记为空值，没有字段的对象保留为全部为空的一行，
+ * 值直接追加到与CSV相同的列向量中，
+ * 内存只与列式结果成正比。结果同样计算列概况和数值列，Histogram/Matrix/BiPartiteGraph可以直接使用
+ */
+public class JsonIngestService {
+
+    // 嵌套对象展开后的列名分隔符
+    private static final String PATH_SEPARATOR = ".";
+    private static final String[] JSON_EXTENSIONS = {".json", ".jsonl", ".ndjson"};
+    // 导入任务：每隔多少条记录检查一次是否已取消
+    private static final int CANCEL_CHECK_INTERVAL_RECORDS = 4 * 1024;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final CompressionDetector compressionDetector = new CompressionDetector();
+    private final ColumnProfiler columnProfiler = new ColumnProfiler();
+    private final DataNormalizationService dataNormalizationService = new DataNormalizationService();
+
+    // 空值标记，读取时逐列判断（见ColumnVector）
+    private NullTokenSet nullTokens = NullTokenSet.DEFAULT;
+
+    /**
+     * 是否按扩展名是JSON文件（.json、.jsonl、.ndjson，可以再加.gz）
+     */
+    public boolean isJsonFile(File file) {
+        String name = file.getName().toLowerCase();
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - ".gz".length());
+        }
+        for (String extension : JSON_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从文件加载JSON Lines或JSON数组（gzip和zip边读边解压）
+     */
+    public CsvData loadJson(File jsonFile) throws IOException {
+        return loadJson(jsonFile, null);
+    }
+
+    /**
+     * 从文件加载JSON，解析和列分析期间检查导入任务是否已取消（取消时抛出CancellationException）
+     *
+     * @param job 导入任务，为null时不可取消
+     */
+    public CsvData loadJson(File jsonFile, ImportJob job) throws IOException {
+        if (!jsonFile.exists()) {
+            throw new FileNotFoundException("JSON文件不存在: " + jsonFile.getAbsolutePath());
+        }
+
+        try (InputStream inputStream = compressionDetector.open(jsonFile, null)) {
+            CsvData result = loadJson(inputStream, job);
+            result.setFileName(jsonFile.getName());
+            return result;
+        }
+    }
+
+    /**
+     * 从InputStream加载JSON
+     * 第一个token是数组时每个元素是一条记录，否则根层级的每个对象是一条记录（JSON Lines）。
+     * 编码由Jackson根据开头的字节检测（UTF-8/16/32）
+     */
+    public CsvData loadJson(InputStream inputStream) throws IOException {
+        return loadJson(inputStream, null);
+    }
+
+    private CsvData loadJson(InputStream inputStream, ImportJob job) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(inputStream)) {
+            ColumnBuilder builder = new ColumnBuilder(nullTokens);
+
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+                    readRecord(parser, token, builder, job);
+                }
+            } else {
+                for (; token != null; token = parser.nextToken()) {
+                    readRecord(parser, token, builder, job);
+                }
+            }
+
+            if (builder.rowCount == 0) {
+                throw new IllegalArgumentException("JSON文件中没有记录");
+            }
+            if (builder.columns.isEmpty()) {
+                throw new IllegalArgumentException("JSON记录中没有字段");
+            }
+            return buildCsvData(builder, job);
+        }
+    }
+
+    /**
+     * 读取一条记录（一个对象），字段逐个追加到列，记录中缺少的列补空值（空对象的所有列都是空值）
+     */
+    private void readRecord(JsonParser parser, JsonToken token, ColumnBuilder builder,
+                            ImportJob job) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("JSON记录必须是对象，第" + (builder.rowCount + 1) + "条记录是: " + token);
+        }
+
+        readObject(parser, "", builder);
+        builder.endRecord();
+        if (job != null && builder.rowCount % CANCEL_CHECK_INTERVAL_RECORDS == 0) {
+            job.checkCancelled();
+        }
+    }
+
+    /**
+     * 读取对象的字段，嵌套对象递归展开，列名为"父.子"
+     */
+    private void readObject(JsonParser parser, String prefix, ColumnBuilder builder) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String path = builder.childPath(prefix, parser.currentName());
+            JsonToken valueToken = parser.nextToken();
+
+            switch (valueToken) {
+                case START_OBJECT:
+                    readObject(parser, path, builder);
+                    break;
+                case START_ARRAY:
+                    builder.setValue(path, readArrayText(parser));
+                    break;
+                case VALUE_NULL:
+                    // 与缺少该字段相同，记为空值（而不是字符串"null"）
+                    builder.setValue(path, "");
+                    break;
+                default:
+                    // 数值保留原始文本（例如1.50），类型由列概况统一判断
+                    builder.setValue(path, parser.getText());
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 把数组原样写回为紧凑的JSON文本
+     */
+    private String readArrayText(JsonParser parser) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            generator.copyCurrentStructure(parser);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * 构建CsvData对象（与CSV导入一样计算列概况和数值列）
+     */
+    private CsvData buildCsvData(ColumnBuilder builder, ImportJob job) {
+        List<String> headers = new ArrayList<>(builder.columns.size());
+        for (ColumnVector column : builder.columns) {
+            column.trimToSize();
+            headers.add(column.getName());
+        }
+
+        CsvData csvData = new CsvData();
+        csvData.setHeaders(headers);
+        csvData.setColumns(builder.columns);
+        csvData.setTotalRows(builder.rowCount);
+        csvData.setTotalColumns(headers.size());
+        csvData.setColumnProfiles(columnProfiler.profileAll(builder.columns, job));
+        dataNormalizationService.attachNumericColumns(csvData);
+
+        return csvData;
+    }
+
+    /**
+     * 设置空值标记，之后读取的文件生效
+     */
+    public void setNullTokens(NullTokenSet nullTokens) {
+        if (nullTokens == null) {
+            throw new IllegalArgumentException("空值标记不能为空");
+        }
+        this.nullTokens = nullTokens;
+    }
+
+    /**
+     * 按出现顺序收集列：新列出现时为之前的行补空值，每条记录结束时为缺少的列补空值
+     */
+    private static class ColumnBuilder {
+        private final List<ColumnVector> columns = new ArrayList<>();
+        private final Map<String, ColumnVector> columnsByPath = new HashMap<>();
+        // 每个前缀下字段名到完整列名的缓存，避免每行重复拼接字符串
+        private final Map<String, Map<String, String>> pathCache = new HashMap<>();
+        private final NullTokenSet nullTokens;
+        private int rowCount = 0;
+
+        ColumnBuilder(NullTokenSet nullTokens) {
+            this.nullTokens = nullTokens;
+        }
+
+        String childPath(String prefix, String name) {
+            return pathCache.computeIfAbsent(prefix, k -> new HashMap<>())
+                    .computeIfAbsent(name, k -> prefix.isEmpty() ? name : prefix + PATH_SEPARATOR + name);
+        }
+
+        void setValue(String path, String value) {
+            ColumnVector column = columnsByPath.get(path);
+            if (column == null) {
+                column = new ColumnVector(path, null, nullTokens);
+                for (int i = 0; i < rowCount; i++) {
+                    column.append("");
+                }
+                columns.add(column);
+                columnsByPath.put(path, column);
+            }
+            // 同一对象中重复的键只保留第一个
+            if (column.size() > rowCount) {
+                return;
+            }
+            column.append(value);
+        }
+
+        void endRecord() {
+            rowCount++;
+            for (ColumnVector column : columns) {
+                if (column.size() < rowCount) {
+                    column.append("");
+                }
+            }
+        }
+    }
+}
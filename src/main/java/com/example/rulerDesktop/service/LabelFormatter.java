@@ -0,0 +1,228 @@
+package com.example.rulerDesktop.service;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 数值和区间标签的格式化（DataNormalizationService和BinningService共用）
+ * 两种数字格式与之前的实现逐字符一致：
+ * formatNumber最多6位小数（原DecimalFormat("#.##")），formatTwoDecimals最多2位小数（原"%.2f"去掉末尾的0）。
+ * 常见的数值直接用整数运算得到舍入结果，只有接近舍入边界或超出范围的数值才使用DecimalFormat/String.format；
+ * 区间标签按(最小值, 最大值, 格式)缓存，重新分箱时同一区间不会重复格式化
+ */
+public final class LabelFormatter {
+
+    // 缓存的最大条目数，超过后清空重建
+    private static final int MAX_CACHED_LABELS = 8192;
+    // 放大后的数值小于该值时，乘法的舍入误差远小于FAST_TIE_MARGIN
+    private static final double MAX_FAST_SCALED = 1e12;
+    // 放大后的小数部分离0.5小于该值时，整数运算无法可靠地判断舍入方向
+    private static final double FAST_TIE_MARGIN = 1e-3;
+
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L};
+
+    // 区间标签的格式，作为缓存键的一部分
+    private static final int FORMAT_SIMPLE_RANGE = DataNormalizationService.IntervalType.values().length;
+    private static final int FORMAT_TWO_DECIMAL_RANGE = FORMAT_SIMPLE_RANGE + 1;
+
+    private static final Map<LabelKey, String> LABEL_CACHE = new ConcurrentHashMap<>();
+
+    // 数字格式化器（线程安全）
+    private static final ThreadLocal<DecimalFormat> DECIMAL_FORMAT =
+            ThreadLocal.withInitial(() -> {
+                DecimalFormat df = new DecimalFormat("#.##",
+                        DecimalFormatSymbols.getInstance(Locale.US));
+                df.setMinimumFractionDigits(0);
+                df.setMaximumFractionDigits(6);
+                df.setGroupingUsed(false);
+                return df;
+            });
+
+    private LabelFormatter() {
+    }
+
+    /**
+     * 格式化数字：整数直接输出，非常大的整数和非常小的数使用科学计数法，其余最多保留6位小数
+     */
+    public static String formatNumber(double number) {
+        // 处理特殊值
+        if (Double.isNaN(number)) return "NaN";
+        if (Double.isInfinite(number)) return number > 0 ? "∞" : "-∞";
+
+        // 如果是整数
+        if (number == Math.floor(number)) {
+            // 如果数字太大，使用科学计数法
+            if (Math.abs(number) > 1e10) {
+                return String.format("%.2e", number);
+            }
+            return String.valueOf((long) number);
+        }
+
+        // 小数的情况
+        if (Math.abs(number) < 0.01 && number != 0) {
+            // 非常小的数，使用科学计数法
+            return String.format("%.2e", number);
+        }
+
+        String fast = formatFixed(number, 6);
+        if (fast != null) {
+            return fast;
+        }
+
+        String formatted = DECIMAL_FORMAT.get().format(number);
+        // 去掉不必要的尾随零
+        if (formatted.contains(".")) {
+            formatted = formatted.replaceAll("0+$", "").replaceAll("\\.$", "");
+        }
+        return formatted;
+    }
+
+    /**
+     * 格式化数字：整数直接输出，其余保留2位小数并去掉末尾的0
+     */
+    public static String formatTwoDecimals(double number) {
+        if (number == Math.floor(number) && !Double.isInfinite(number)) {
+            return String.valueOf((long) number);
+        }
+
+        String fast = formatFixed(number, 2);
+        if (fast != null) {
+            return fast;
+        }
+        return String.format("%.2f", number).replaceAll("0*$", "").replaceAll("\\.$", "");
+    }
+
+    /**
+     * 格式化区间（结果缓存），最小值等于最大值时只输出一个数
+     */
+    public static String formatInterval(double min, double max, DataNormalizationService.IntervalType intervalType) {
+        return cachedLabel(min, max, intervalType.ordinal());
+    }
+
+    /**
+     * 不带括号的区间"min-max"（结果缓存），最小值等于最大值时只输出一个数
+     */
+    public static String formatSimpleRange(double min, double max) {
+        return cachedLabel(min, max, FORMAT_SIMPLE_RANGE);
+    }
+
+    /**
+     * 保留2位小数的区间"min-max"（结果缓存），两端格式化后相同时只输出一个数
+     */
+    public static String formatTwoDecimalRange(double min, double max) {
+        return cachedLabel(min, max, FORMAT_TWO_DECIMAL_RANGE);
+    }
+
+    private static String cachedLabel(double min, double max, int format) {
+        LabelKey key = new LabelKey(min, max, format);
+        String label = LABEL_CACHE.get(key);
+        if (label == null) {
+            label = createLabel(min, max, format);
+            if (LABEL_CACHE.size() >= MAX_CACHED_LABELS) {
+                LABEL_CACHE.clear();
+            }
+            LABEL_CACHE.put(key, label);
+        }
+        return label;
+    }
+
+    private static String createLabel(double min, double max, int format) {
+        if (format == FORMAT_TWO_DECIMAL_RANGE) {
+            String minStr = formatTwoDecimals(min);
+            String maxStr = formatTwoDecimals(max);
+            return minStr.equals(maxStr) ? minStr : minStr + "-" + maxStr;
+        }
+
+        String minStr = formatNumber(min);
+        if (min == max) {
+            return minStr;
+        }
+        String maxStr = formatNumber(max);
+        if (format == FORMAT_SIMPLE_RANGE) {
+            return minStr + "-" + maxStr;
+        }
+
+        switch (DataNormalizationService.IntervalType.values()[format]) {
+            case CLOSED:
+                return "[" + minStr + ", " + maxStr + "]";
+            case OPEN:
+                return "(" + minStr + ", " + maxStr + ")";
+            case LEFT_OPEN:
+                return "(" + minStr + ", " + maxStr + "]";
+            case RIGHT_OPEN:
+                return "[" + minStr + ", " + maxStr + ")";
+            default:
+                return minStr + "-" + maxStr;
+        }
+    }
+
+    /**
+     * 用整数运算把数值舍入到digits位小数，去掉末尾的0
+     * 放大后的数值过大或离舍入边界太近时返回null，由调用方使用精确的格式化
+     */
+    private static String formatFixed(double number, int digits) {
+        double scaled = Math.abs(number) * POWERS_OF_TEN[digits];
+        if (!(scaled < MAX_FAST_SCALED)) {
+            return null;
+        }
+        double floor = Math.floor(scaled);
+        double fraction = scaled - floor;
+        if (Math.abs(fraction - 0.5) < FAST_TIE_MARGIN) {
+            return null;
+        }
+
+        long units = (long) floor + (fraction > 0.5 ? 1 : 0);
+        long integerPart = units / POWERS_OF_TEN[digits];
+        long fractionPart = units % POWERS_OF_TEN[digits];
+
+        StringBuilder sb = new StringBuilder(24);
+        if (number < 0) {
+            sb.append('-');
+        }
+        sb.append(integerPart);
+        if (fractionPart != 0) {
+            int fractionDigits = digits;
+            while (fractionPart % 10 == 0) {
+                fractionPart /= 10;
+                fractionDigits--;
+            }
+            sb.append('.');
+            // 补齐小数部分的前导零
+            for (long p = POWERS_OF_TEN[fractionDigits - 1]; p > fractionPart; p /= 10) {
+                sb.append('0');
+            }
+            sb.append(fractionPart);
+        }
+        return sb.toString();
+    }
+
+    private static final class LabelKey {
+        private final long min;
+        private final long max;
+        private final int format;
+
+        LabelKey(double min, double max, int format) {
+            this.min = Double.doubleToLongBits(min);
+            this.max = Double.doubleToLongBits(max);
+            this.format = format;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LabelKey)) {
+                return false;
+            }
+            LabelKey other = (LabelKey) o;
+            return min == other.min && max == other.max && format == other.format;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(min, max, format);
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.example.rulerDesktop.service;
 
-import com.example.rulerDesktop.model.DataPoint;
+import com.example.rulerDesktop.model.ColumnVector;
+import com.example.rulerDesktop.model.NumericColumn;
 import com.example.rulerDesktop.model.CsvData;
 import com.example.rulerDesktop.model.Matrix;
+import com.example.rulerDesktop.model.RowIndexList;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 矩阵服务类
@@ -33,6 +36,15 @@ public class MatrixService {
      * 更新版本：使用BinningService
      */
     public Matrix generateSingleMatrix(CsvData csvData, String columnName, int binCount) {
+        return generateSingleMatrix(csvData, columnName, binCount, null);
+    }
+
+    /**
+     * 为指定列生成Matrix数据，分箱时每隔ImportJob.CANCEL_CHECK_INTERVAL_ROWS行检查一次取消
+     *
+     * @param job 导入任务，为null时不可取消
+     */
+    public Matrix generateSingleMatrix(CsvData csvData, String columnName, int binCount, ImportJob job) {
         if (!csvData.getHeaders().contains(columnName)) {
             throw new IllegalArgumentException("列 '" + columnName + "' 不存在");
         }
@@ -50,40 +62,40 @@ public class MatrixService {
 
         int columnIndex = csvData.getHeaders().indexOf(columnName);
 
-        // 1. 提取并标准化该列的所有值
-        List<String> columnValues = new ArrayList<>();
-        List<DataPoint> dataPoints = new ArrayList<>();
+        // 1. 原始值是列的标准化视图，不逐行复制；字典编码列按不同值标准化一次（结果缓存在列上）
+        ColumnVector column = csvData.getColumn(columnName);
+        int rowCount = column.size();
+        matrix.setColumn(column, columnIndex);
+        matrix.setOriginalValues(dataNormalizationService.normalizedView(column, rowCount));
 
-        for (int rowIndex = 0; rowIndex < csvData.getRows().size(); rowIndex++) {
-            Map<String, String> row = csvData.getRows().get(rowIndex);
-            String value = row.get(columnName);
-            String normalizedValue = dataNormalizationService.normalizeValue(value);
-            columnValues.add(normalizedValue);
-            dataPoints.add(new DataPoint(value, rowIndex, columnIndex));
-        }
-
-        matrix.setOriginalValues(new ArrayList<>(columnValues));
+        // 数值只解码一次，重新分箱时直接复用（堆外列解码到堆外）
+        NumericColumn numericValues = column.getNumericColumn() != null
+                ? column.getNumericColumn()
+                : dataNormalizationService.toNumericColumn(column);
+        matrix.setNumericValues(numericValues);
 
-        if (columnValues.size() < 2) {
+        if (rowCount < 2) {
             return matrix; // 少于2行数据无法生成序列
         }
 
-        // 2. 使用BinningService进行分箱
+        // 2. 使用BinningService进行分箱：直接读取列向量，每个箱只记录行号
         BinningService.BinningResult binningResult = binningService.performBinning(
-                columnValues,
-                dataPoints,
+                column,
+                rowCount,
+                numericValues,
                 binCount,
-                BinningService.BinningStrategy.AUTO // 使用自动策略
+                BinningService.BinningStrategy.AUTO, // 使用自动策略
+                job
         );
 
         // 3. 设置分箱数据
         matrix.setValueToBinMapping(binningResult.getValueToBinMapping());
-        matrix.setBinDetails(binningResult.getBinDetails());
+        matrix.setBinRows(binningResult.getBinRows());
         matrix.setOrderedValues(binningResult.getOrderedBinLabels());
         matrix.setActualBinCount(binningResult.getActualBinCount());
 
         // 4. 生成序列矩阵
-        generateSequenceMatrix(matrix, binningResult.getBinnedValues());
+        generateSequenceMatrix(matrix, binningResult, job);
 
         return matrix;
     }
@@ -103,52 +115,142 @@ public class MatrixService {
             throw new IllegalStateException("Matrix缺少原始值数据，无法重新分箱");
         }
 
-        // 重建数据点
-        List<DataPoint> dataPoints = matrix.getBinDetails().values().stream()
-                .flatMap(List::stream)
-                .sorted(Comparator.comparingInt(DataPoint::getRowIndex))
-                .collect(Collectors.toList());
-
-        if (dataPoints.isEmpty()) {
-            for (int i = 0; i < matrix.getOriginalValues().size(); i++) {
-                dataPoints.add(new DataPoint(matrix.getOriginalValues().get(i), i, 0));
-            }
-        }
-
-        matrix.setActualBinCount(newBinCount);
-        matrix.getBinDetails().clear();
-
-        // 使用BinningService进行分箱
-        BinningService.BinningResult binningResult = binningService.performBinning(
-                matrix.getOriginalValues(),
-                dataPoints,
-                newBinCount,
-                BinningService.BinningStrategy.AUTO
-        );
+        // 重新分箱：原始值是列的视图时直接读取列（字典编码列按编码），结果整体替换，不修改原有的箱
+        List<String> originalValues = matrix.getOriginalValues();
+        BinningService.BinningResult binningResult = matrix.getColumn() != null
+                ? binningService.performBinning(matrix.getColumn(), originalValues.size(),
+                        matrix.getNumericValues(), newBinCount, BinningService.BinningStrategy.AUTO)
+                : binningService.performBinning(originalValues, matrix.getNumericValues(),
+                        newBinCount, BinningService.BinningStrategy.AUTO);
 
         matrix.setValueToBinMapping(binningResult.getValueToBinMapping());
-        matrix.setBinDetails(binningResult.getBinDetails());
+        matrix.setBinRows(binningResult.getBinRows());
         matrix.setOrderedValues(binningResult.getOrderedBinLabels());
         matrix.setActualBinCount(binningResult.getActualBinCount());
 
-        generateSequenceMatrix(matrix, binningResult.getBinnedValues());
+        generateSequenceMatrix(matrix, binningResult, null);
 
 //        this.printMatrix(matrix);
 
         return matrix;
     }
 
+    /**
+     * 复制Matrix，副本读取csvData（见CsvParsingService.copyOf）中的同名列
+     * 只复制每个箱的计数，行号和列数据共享；之后对原Matrix的appendRows不影响副本（跟踪模式下界面显示副本）
+     */
+    public Matrix copyOf(Matrix matrix, CsvData csvData) {
+        Matrix copy = matrix.copy();
+        ColumnVector column = csvData.getColumn(matrix.getColumnName());
+        if (column != null && matrix.getOriginalValues() != null) {
+            copy.setColumn(column, csvData.getHeaders().indexOf(matrix.getColumnName()));
+            copy.setOriginalValues(dataNormalizationService.normalizedView(column, matrix.getOriginalValues().size()));
+        }
+        return copy;
+    }
+
+    /**
+     * 把追加到CsvData末尾的行计入已有的Matrix（跟踪模式）
+     * 新值都能放入现有的箱时只累加从上一行开始的转移次数；否则按当前分箱数量重新生成
+     * 累加时直接修改传入的Matrix：跟踪模式下它只由监视线程使用，界面显示copyOf()得到的副本
+     *
+     * @param fromRow 第一条新行的行号
+     */
+    public Matrix appendRows(Matrix matrix, CsvData csvData, int fromRow) {
+        if (matrix == null || csvData == null) {
+            throw new IllegalArgumentException("Matrix和CSV数据不能为空");
+        }
+
+        String columnName = matrix.getColumnName();
+        ColumnVector column = csvData.getColumn(columnName);
+        if (column == null) {
+            throw new IllegalArgumentException("列 '" + columnName + "' 不存在");
+        }
+        List<String> originalValues = matrix.getOriginalValues();
+        if (originalValues.size() != fromRow || originalValues.size() < 2 || matrix.getMatrix() == null) {
+            return regenerate(matrix, csvData);
+        }
+
+        // 映射可能与副本共享（见Matrix.copy()），分配器只向映射新增值：换成ConcurrentHashMap，读取副本的线程不受影响
+        if (!(matrix.getValueToBinMapping() instanceof ConcurrentHashMap)) {
+            matrix.setValueToBinMapping(new ConcurrentHashMap<>(matrix.getValueToBinMapping()));
+        }
+        BinningService.BinAssigner assigner = binningService.createBinAssigner(
+                matrix.getValueToBinMapping(), matrix.getOrderedValues());
+        String previousLabel = assigner.assign(originalValues.get(originalValues.size() - 1));
+        if (previousLabel == null) {
+            return regenerate(matrix, csvData);
+        }
+
+        int rowCount = column.size();
+        int newRows = rowCount - fromRow;
+        List<String> normalizedValues = dataNormalizationService.normalizeColumn(column, fromRow);
+        String[] binLabels = new String[newRows];
+        for (int i = 0; i < newRows; i++) {
+            binLabels[i] = assigner.assign(normalizedValues.get(i));
+            if (binLabels[i] == null) {
+                return regenerate(matrix, csvData);
+            }
+        }
+
+        Map<String, Integer> valueIndex = new HashMap<>();
+        for (int i = 0; i < matrix.getOrderedValues().size(); i++) {
+            valueIndex.put(matrix.getOrderedValues().get(i), i);
+        }
+
+        int[][] matrixData = matrix.getMatrix();
+        for (int i = 0; i < newRows; i++) {
+            Integer fromIndex = valueIndex.get(previousLabel);
+            Integer toIndex = valueIndex.get(binLabels[i]);
+            if (fromIndex != null && toIndex != null) {
+                matrixData[fromIndex][toIndex]++;
+            }
+            previousLabel = binLabels[i];
+
+            matrix.getBinRows().computeIfAbsent(binLabels[i], k -> new RowIndexList()).add(fromRow + i);
+        }
+        matrix.setColumn(column, csvData.getHeaders().indexOf(columnName));
+        matrix.setOriginalValues(dataNormalizationService.normalizedView(column, rowCount));
+        matrix.setTotalSequences(rowCount - 1);
+        // 解码结果不再与原始值对应，重新分箱时按需重新解码
+        matrix.setNumericValues(null);
+
+        return matrix;
+    }
+
+    private Matrix regenerate(Matrix matrix, CsvData csvData) {
+        int binCount = Math.max(BinningService.MIN_BIN_COUNT,
+                Math.min(BinningService.MAX_BIN_COUNT, matrix.getActualBinCount()));
+        return generateSingleMatrix(csvData, matrix.getColumnName(), binCount);
+    }
+
     /**
      * 批量生成所有列的Matrix
      */
     public Map<String, Matrix> generateAllMatrices(CsvData csvData, int binCount) {
+        return generateAllMatrices(csvData, binCount, null);
+    }
+
+    /**
+     * 为所有列生成Matrix，每生成一列通过导入任务报告进度并检查取消
+     *
+     * @param job 导入任务，为null时不可取消
+     */
+    public Map<String, Matrix> generateAllMatrices(CsvData csvData, int binCount, ImportJob job) {
         Map<String, Matrix> matrices = new LinkedHashMap<>();
 
-        for (String columnName : csvData.getHeaders()) {
+        List<String> headers = csvData.getHeaders();
+        for (int i = 0; i < headers.size(); i++) {
+            String columnName = headers.get(i);
+            if (job != null) {
+                job.progress(ImportJob.Stage.VIEWS, i, headers.size());
+            }
             try {
-                Matrix matrix = generateSingleMatrix(csvData, columnName, binCount);
+                Matrix matrix = generateSingleMatrix(csvData, columnName, binCount, job);
                 matrices.put(columnName, matrix);
                 System.out.println("成功生成列 '" + columnName + "' 的Matrix");
+            } catch (CancellationException e) {
+                throw e;
             } catch (Exception e) {
                 System.err.println("生成列 '" + columnName + "' 的Matrix时出错: " + e.getMessage());
                 e.printStackTrace();
@@ -245,32 +347,38 @@ public class MatrixService {
 
     /**
      * 生成序列矩阵
+     * 按分箱结果中每行所在的箱计算转移，箱的位置先换算为矩阵的行列号（同名的箱取最后一个，与按标签查找一致）
      */
-    private void generateSequenceMatrix(Matrix matrix, List<String> binnedValues) {
+    private void generateSequenceMatrix(Matrix matrix, BinningService.BinningResult binningResult, ImportJob job) {
         List<String> orderedValues = matrix.getOrderedValues();
         Map<String, Integer> valueIndex = new HashMap<>();
         for (int i = 0; i < orderedValues.size(); i++) {
             valueIndex.put(orderedValues.get(i), i);
         }
+        int[] matrixIndexes = new int[orderedValues.size()];
+        for (int i = 0; i < orderedValues.size(); i++) {
+            matrixIndexes[i] = valueIndex.get(orderedValues.get(i));
+        }
 
         int size = orderedValues.size();
         int[][] matrixData = new int[size][size];
 
         // 计算序列转移
-        for (int i = 0; i < binnedValues.size() - 1; i++) {
-            String from = binnedValues.get(i);
-            String to = binnedValues.get(i + 1);
-
-            Integer fromIndex = valueIndex.get(from);
-            Integer toIndex = valueIndex.get(to);
+        int[] binIndexes = binningResult.getBinIndexes();
+        for (int i = 0; i < binIndexes.length - 1; i++) {
+            if (job != null && i % ImportJob.CANCEL_CHECK_INTERVAL_ROWS == 0) {
+                job.checkCancelled();
+            }
+            int from = binIndexes[i];
+            int to = binIndexes[i + 1];
 
-            if (fromIndex != null && toIndex != null) {
-                matrixData[fromIndex][toIndex]++;
+            if (from >= 0 && to >= 0) {
+                matrixData[matrixIndexes[from]][matrixIndexes[to]]++;
             }
         }
 
         matrix.setMatrix(matrixData);
-        matrix.setTotalSequences(binnedValues.size() - 1);
+        matrix.setTotalSequences(binIndexes.length - 1);
     }
 
     /**
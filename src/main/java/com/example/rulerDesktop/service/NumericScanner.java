@@ -0,0 +1,129 @@
+package com.example.rulerDesktop.service;
+
+/**
+ * 数值扫描器：单次遍历字符，同时校验和解析十进制数，不分配对象
+ * 接受的格式与之前的正则 -?\d*\.?\d+([eE][-+]?\d+)? 一致：可选的负号、可选的小数点、可选的指数，
+ * 不接受前导+号、"1."、首尾空白和NaN/Infinity；解析结果与Double.parseDouble相同。
+ * 不是数值时返回NaN（合法的数值不会解析为NaN）
+ */
+public final class NumericScanner {
+
+    // 快速路径的最大有效数字位数（尾数可以精确表示为double）
+    private static final int MAX_FAST_DIGITS = 15;
+    // 10的幂超过该值后不能精确表示为double
+    private static final int MAX_FAST_EXPONENT = 22;
+    // 指数部分的数值超过该值后不再累加（结果已溢出或下溢，交给Double.parseDouble）
+    private static final int MAX_EXPONENT_VALUE = 100000;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private NumericScanner() {
+    }
+
+    /**
+     * 是否为数值
+     */
+    public static boolean isNumeric(String value) {
+        return !Double.isNaN(parse(value));
+    }
+
+    /**
+     * 校验并解析数值，不是数值时返回NaN
+     * 不超过15位有效数字且指数不大的数直接计算（尾数和10的幂都能精确表示，一次乘除即为正确舍入的结果），
+     * 其余合法的数值交给Double.parseDouble
+     */
+    public static double parse(String value) {
+        if (value == null) {
+            return Double.NaN;
+        }
+
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && value.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        int integerDigits = 0;
+        int fractionDigits = 0;
+        boolean seenDot = false;
+        boolean fast = true;
+
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (seenDot) {
+                    fractionDigits++;
+                } else {
+                    integerDigits++;
+                }
+                if (mantissa == 0 && c == '0') {
+                    // 前导零不计入有效数字
+                    if (seenDot) {
+                        exponent--;
+                    }
+                } else if (significantDigits < MAX_FAST_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    significantDigits++;
+                    if (seenDot) {
+                        exponent--;
+                    }
+                } else {
+                    fast = false;
+                }
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                break;
+            }
+        }
+
+        // 有小数点时小数点后至少一位数字，否则至少一位整数数字
+        if (seenDot ? fractionDigits == 0 : integerDigits == 0) {
+            return Double.NaN;
+        }
+
+        if (i < length) {
+            char c = value.charAt(i);
+            if (c != 'e' && c != 'E') {
+                return Double.NaN;
+            }
+            i++;
+            boolean negativeExponent = false;
+            if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                negativeExponent = value.charAt(i) == '-';
+                i++;
+            }
+            if (i == length) {
+                return Double.NaN;
+            }
+            int exponentValue = 0;
+            for (; i < length; i++) {
+                c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    return Double.NaN;
+                }
+                if (exponentValue < MAX_EXPONENT_VALUE) {
+                    exponentValue = exponentValue * 10 + (c - '0');
+                } else {
+                    fast = false;
+                }
+            }
+            exponent += negativeExponent ? -exponentValue : exponentValue;
+        }
+
+        if (!fast || exponent < -MAX_FAST_EXPONENT || exponent > MAX_FAST_EXPONENT) {
+            return Double.parseDouble(value);
+        }
+
+        double result = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -result : result;
+    }
+}
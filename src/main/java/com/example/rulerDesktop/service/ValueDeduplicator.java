@@ -0,0 +1,124 @@
+package com.example.rulerDesktop.service;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * 导入时的值去重缓存（每列一个）
+ * 以字段的原始字节为键查找已生成的字符串，重复出现的值直接复用同一个String实例，
+ * 不再为每个单元格解码、分配新字符串；共享实例的哈希值只计算一次，
+ * 后续HashMap查找时equals也能直接命中引用相等的快速路径。
+ * 缓存大小有上限；采样一段后命中率过低（高基数列）则自动停用
+ */
+public class ValueDeduplicator {
+
+    // 缓存的最大条目数
+    public static final int MAX_ENTRIES = 1 << 16;
+    // 判断是否停用前的采样次数
+    private static final int SAMPLE_LOOKUPS = 8192;
+    // 采样期间的最低命中率，低于该值认为是高基数列
+    private static final double MIN_HIT_RATIO = 0.5;
+    // 超过该长度的字段不缓存
+    private static final int MAX_VALUE_BYTES = 64;
+
+    private final Charset charset;
+
+    // 开放寻址哈希表
+    private byte[][] keys = new byte[256][];
+    private String[] strings = new String[256];
+    private int[] hashes = new int[256];
+    private int count = 0;
+
+    private boolean enabled = true;
+    private int lookups = 0;
+    private int hits = 0;
+
+    public ValueDeduplicator(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * 返回与给定字节对应的字符串，相同字节复用已有实例
+     */
+    public String get(byte[] source, int start, int length) {
+        if (length == 0) {
+            return "";
+        }
+        if (!enabled || length > MAX_VALUE_BYTES) {
+            return new String(source, start, length, charset);
+        }
+
+        if (++lookups == SAMPLE_LOOKUPS && hits < SAMPLE_LOOKUPS * MIN_HIT_RATIO) {
+            // 高基数列，去重收益不足，停用并释放缓存
+            disable();
+            return new String(source, start, length, charset);
+        }
+
+        int hash = hash(source, start, length);
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && Arrays.equals(keys[slot], 0, keys[slot].length,
+                    source, start, start + length)) {
+                hits++;
+                return strings[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        String value = new String(source, start, length, charset);
+        if (count < MAX_ENTRIES) {
+            keys[slot] = Arrays.copyOfRange(source, start, start + length);
+            strings[slot] = value;
+            hashes[slot] = hash;
+            count++;
+            if (count * 2 > keys.length) {
+                resize();
+            }
+        }
+        return value;
+    }
+
+    public boolean isEnabled() { return enabled; }
+    public int size() { return count; }
+
+    private void disable() {
+        enabled = false;
+        keys = null;
+        strings = null;
+        hashes = null;
+        count = 0;
+    }
+
+    private void resize() {
+        byte[][] oldKeys = keys;
+        String[] oldStrings = strings;
+        int[] oldHashes = hashes;
+
+        keys = new byte[oldKeys.length * 2][];
+        strings = new String[keys.length];
+        hashes = new int[keys.length];
+        int mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                strings[slot] = oldStrings[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private static int hash(byte[] source, int start, int length) {
+        int hash = 1;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + source[i];
+        }
+        // 打散低位，减少开放寻址的聚集
+        return hash ^ (hash >>> 16);
+    }
+}